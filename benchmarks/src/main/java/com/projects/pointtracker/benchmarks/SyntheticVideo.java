@@ -0,0 +1,132 @@
+package com.projects.pointtracker.benchmarks;
+
+import com.projects.pointtracker.FrameSink;
+import com.projects.pointtracker.FrameSource;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Random;
+
+/**
+ * In-memory video of a colored dot moving over a background with sensor-like
+ * noise on every channel, rendered
+ * once so benchmarks measure the tracker rather than the renderer
+ */
+public class SyntheticVideo {
+
+    // Color of the dot to track
+    public static final int DOT = 0x20c040;
+
+    // Width and height of the frames
+    public final int width;
+    public final int height;
+
+    // Rendered frames in playback order
+    public final BufferedImage[] frames;
+
+    // Position of the dot in every frame
+    public final int[][] positions;
+
+
+    /**
+     * Constructor to render a synthetic video
+     * 
+     * @param width  the width of the frames
+     * @param height the height of the frames
+     * @param count  the number of frames
+     * @param dot    the diameter of the dot in pixels
+     * @param speed  the distance the dot moves per frame in pixels
+     * @param noise  the largest random change of every channel of every pixel
+     * @param seed   the seed of the noise
+     */
+    public SyntheticVideo(int width, int height, int count, int dot, double speed, int noise, long seed) {
+        this.width = width;
+        this.height = height;
+        this.frames = new BufferedImage[count];
+        this.positions = new int[count][];
+        Random random = new Random(seed);
+
+        // The dot circles around the centre, so any speed keeps it inside the frame
+        double radius = Math.min(width, height) * 0.35;
+        double step = speed / radius;
+        for (int i = 0; i < count; i++) {
+            int x = (int) (width / 2 + radius * Math.cos(i * step));
+            int y = (int) (height / 2 + radius * Math.sin(i * step));
+            positions[i] = new int[] { x, y };
+
+            BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics g = frame.getGraphics();
+            g.setColor(new Color(40, 40, 40));
+            g.fillRect(0, 0, width, height);
+            g.setColor(new Color(DOT));
+            g.fillOval(x - dot / 2, y - dot / 2, dot, dot);
+            g.dispose();
+
+            if (noise > 0) {
+                byte[] data = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+                for (int p = 0; p < data.length; p++) {
+                    int value = (data[p] & 0xff) + random.nextInt(2 * noise + 1) - noise;
+                    data[p] = (byte) Math.max(0, Math.min(255, value));
+                }
+            }
+            frames[i] = frame;
+        }
+    }
+
+    /**
+     * Utility function to play the video as a frame source, looping over the
+     * rendered frames
+     * 
+     * @param count the number of frames to play
+     * @return a source copying the rendered frames into the tracker's buffers
+     */
+    public FrameSource source(int count) {
+        return new FrameSource() {
+            private int next = 0;
+
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public boolean read(BufferedImage frame) {
+                if (next >= count) {
+                    return false;
+                }
+                byte[] from = ((DataBufferByte) frames[next++ % frames.length].getRaster().getDataBuffer()).getData();
+                byte[] to = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+                System.arraycopy(from, 0, to, 0, from.length);
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Utility function to get a sink that drops every frame
+     * 
+     * @return a sink that does nothing
+     */
+    public static FrameSink discard() {
+        return new FrameSink() {
+            @Override
+            public void write(BufferedImage frame) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,215 @@
+package com.projects.pointtracker.benchmarks;
+
+import com.projects.pointtracker.ColorMatcher;
+import com.projects.pointtracker.ColorMetric;
+import com.projects.pointtracker.FrameMetrics;
+import com.projects.pointtracker.Metrics;
+import com.projects.pointtracker.MotionPredictor;
+import com.projects.pointtracker.Target;
+import com.projects.pointtracker.Tracker;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the tracking hot paths on synthetic frames. Run with
+ * {@code java -jar target/benchmarks.jar -rf json -rff jmh-result.json} for
+ * machine-readable results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackerBenchmark {
+
+    // Frame size as WIDTHxHEIGHT
+    @Param({ "1280x720", "1920x1080", "3840x2160" })
+    public String resolution;
+
+    // Diameter of the dot in pixels
+    @Param({ "12" })
+    public int dot;
+
+    // Distance the dot moves per frame in pixels
+    @Param({ "6" })
+    public double speed;
+
+    // Largest random change of every channel of every pixel
+    @Param({ "8" })
+    public int noise;
+
+    // Number of frames played by the trackPoint benchmark
+    @Param({ "60" })
+    public int frames;
+
+    private SyntheticVideo video;
+    private SyntheticVideo empty;
+    private Tracker tracker;
+    private Tracker centroidTracker;
+    private int[] colors;
+    private ColorMatcher matcher;
+    private ColorMatcher labMatcher;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] size = resolution.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        video = new SyntheticVideo(width, height, Math.min(frames, 30), dot, speed, noise, 42);
+        empty = new SyntheticVideo(width, height, 1, 0, 0, noise, 7);
+
+        tracker = new Tracker("synthetic", 30, width, height, frames);
+        tracker.verbose = false;
+        centroidTracker = new Tracker("synthetic", 30, width, height, frames);
+        centroidTracker.verbose = false;
+        centroidTracker.useBlobs = false;
+
+        // Mix of background, noise and near-target colors for the per-pixel test
+        Random random = new Random(1);
+        colors = new int[4096];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextBoolean() ? random.nextInt(1 << 24)
+                    : SyntheticVideo.DOT ^ (random.nextInt(32) * 0x010101);
+        }
+        matcher = new ColorMatcher(SyntheticVideo.DOT, tracker.tolerance);
+        labMatcher = new ColorMatcher(SyntheticVideo.DOT, tracker.tolerance, ColorMetric.LAB);
+    }
+
+    @Benchmark
+    public int colorDiff() {
+        int matches = 0;
+        for (int color : colors) {
+            if (tracker.colorDiff(color, SyntheticVideo.DOT) <= tracker.tolerance) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int colorMatcher() {
+        int matches = 0;
+        for (int color : colors) {
+            if (matcher.matches(color)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int colorMatcherTable() {
+        int matches = 0;
+        for (int color : colors) {
+            if (labMatcher.matches(color)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int[] searchPointFullFrame() {
+        BufferedImage frame = video.frames[0];
+        return tracker.searchPoint(0, frame.getWidth(), 0, frame.getHeight(), frame, SyntheticVideo.DOT);
+    }
+
+    @Benchmark
+    public int[] findPointHit() {
+        int[] position = video.positions[0];
+        return tracker.findPoint(SyntheticVideo.DOT, video.frames[0], position[0], position[1]);
+    }
+
+    @Benchmark
+    public int[] findPointCentroid() {
+        int[] position = video.positions[0];
+        return centroidTracker.findPoint(SyntheticVideo.DOT, video.frames[0], position[0], position[1]);
+    }
+
+    @Benchmark
+    public boolean findPointLost() {
+        try {
+            tracker.findPoint(SyntheticVideo.DOT, empty.frames[0], video.positions[0][0], video.positions[0][1]);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean trackPoint() {
+        return tracker.trackPoint(List.of(new Target(SyntheticVideo.DOT)), video.source(frames),
+                SyntheticVideo.discard());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean trackPredictor(PredictorState state, ScanCounters counters) {
+        FrameMetrics run = new FrameMetrics();
+        tracker.metrics = run;
+        try {
+            return tracker.trackPoint(
+                    List.of(new Target(SyntheticVideo.DOT, tracker.tolerance, MotionPredictor.named(state.predictor))),
+                    video.source(frames), SyntheticVideo.discard());
+        } finally {
+            tracker.metrics = Metrics.NOOP;
+            counters.frames += run.pixels.count;
+            counters.pixels += run.pixels.sum;
+        }
+    }
+
+    /**
+     * Motion model of the trackPredictor benchmark, kept out of the shared state
+     * so only that benchmark runs once per model
+     */
+    @State(Scope.Benchmark)
+    public static class PredictorState {
+
+        // Name of the motion model, see MotionPredictor.named
+        @Param({ "linear", "kalman" })
+        public String predictor;
+    }
+
+    /**
+     * Pixels scanned by the trackPredictor benchmark, reported next to its time.
+     * The Kalman filter sizes the first search window from its uncertainty, the
+     * linear predictor always searches 1/20th of the frame first.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ScanCounters {
+
+        // Frames tracked and pixels scanned in them during the iteration
+        public long frames;
+        public long pixels;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            frames = 0;
+            pixels = 0;
+        }
+
+        public double pixelsPerFrame() {
+            return frames == 0 ? 0 : (double) pixels / frames;
+        }
+    }
+}
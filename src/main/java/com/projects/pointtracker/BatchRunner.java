@@ -0,0 +1,315 @@
+package com.projects.pointtracker;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless command line entry point that processes a manifest of videos on a
+ * bounded pool of workers. Every job gets its own Tracker, so jobs share no
+ * state.
+ * 
+ * <pre>
+ * java -cp target/classes com.projects.pointtracker.BatchRunner manifest.csv [--workers N] [--tolerance T] [--metrics]
+ *     [--roi x,y,width,height] [--scale S] [--metric rgb|hsv|lab] [--segments N] [--motion-mask]
+ *     [--path path.csv] [--stride K] [--checkpoint N] [--sub-pixel] [--frame-memory MB]
+ *     [--predictor linear|kalman]
+ * </pre>
+ * 
+ * Each non-empty manifest line that does not start with # describes one job:
+ * 
+ * <pre>
+ * input video,output video,target color as rrggbb,pixels per track width[,track width]
+ * </pre>
+ * 
+ * With --metrics, the per-frame timings of each job are written next to its
+ * output video as .metrics.csv, .metrics.json and .metrics.prom files. With
+ * --roi, points are only tracked in that region of every video, and with
+ * --scale the region is downscaled by S before tracking. --metric picks the
+ * color space the tolerance is measured in, see ColorMetric. With --segments,
+ * each video is tracked as N time segments in parallel before it is drawn, see
+ * SegmentTracker. --motion-mask skips the parts of fixed camera footage that
+ * did not change, see MotionMask. With --path, the deviation of every frame
+ * from the path read by ReferencePath.load is written next to the output video
+ * as a .path.csv file. --stride fully searches each point at most every K
+ * frames and follows it in between, see KeyframeSchedule. --checkpoint sets the
+ * number of frames between checkpoints, from which a job that was killed
+ * continues when it is run again, or turns them off with 0, see TrackCheckpoint.
+ * --sub-pixel rounds every point from its exact centroid, which matters most
+ * for 4K and 8K videos tracked with --scale, and --frame-memory caps the frame
+ * buffers each job holds at once, 1024 MB unless given. --predictor picks the
+ * motion model, where kalman sizes the first search window of every frame from
+ * the uncertainty of its prediction, see KalmanPredictor.
+ */
+public class BatchRunner {
+
+    /**
+     * A single video to process
+     */
+    private static class Job {
+        String input;
+        String output;
+        int color;
+        double ratio;
+        double trackWidth = 1;
+    }
+
+    /**
+     * Settings shared by every job
+     */
+    private static class Options {
+        double tolerance = 15;
+        boolean metrics = false;
+        int[] roi;
+        double scale = 1;
+        ColorMetric metric = ColorMetric.RGB;
+        int segments = 1;
+        boolean motionMask = false;
+        ReferencePath path;
+        int stride = 1;
+        int checkpoint = 1000;
+        boolean subPixel = false;
+        long frameMemory = 1L << 30;
+        MotionPredictor predictor = new LinearPredictor();
+    }
+
+    /**
+     * Function main
+     * 
+     * @param args program arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        String manifest = null;
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        Options options = new Options();
+        int i = 0;
+        try {
+            for (; i < args.length; i++) {
+                if (args[i].equals("--workers") && i + 1 < args.length) {
+                    workers = parseCount(args[++i], 1);
+                } else if (args[i].equals("--tolerance") && i + 1 < args.length) {
+                    options.tolerance = Double.parseDouble(args[++i]);
+                } else if (args[i].equals("--roi") && i + 1 < args.length) {
+                    String[] parts = args[++i].split(",");
+                    if (parts.length != 4) {
+                        throw new IllegalArgumentException("expected x,y,width,height");
+                    }
+                    options.roi = new int[] { parseCount(parts[0], 0), parseCount(parts[1], 0),
+                            parseCount(parts[2], 1), parseCount(parts[3], 1) };
+                } else if (args[i].equals("--scale") && i + 1 < args.length) {
+                    options.scale = Double.parseDouble(args[++i]);
+                    if (!(options.scale > 0)) {
+                        throw new IllegalArgumentException("must be above 0");
+                    }
+                } else if (args[i].equals("--metric") && i + 1 < args.length) {
+                    options.metric = ColorMetric.valueOf(args[++i].toUpperCase());
+                } else if (args[i].equals("--segments") && i + 1 < args.length) {
+                    options.segments = parseCount(args[++i], 1);
+                } else if (args[i].equals("--path") && i + 1 < args.length) {
+                    try {
+                        options.path = ReferencePath.load(args[++i]);
+                    } catch (IOException | IllegalArgumentException e) {
+                        System.err.println("Error reading path: " + e.getMessage());
+                        System.exit(2);
+                        return;
+                    }
+                } else if (args[i].equals("--stride") && i + 1 < args.length) {
+                    options.stride = parseCount(args[++i], 1);
+                } else if (args[i].equals("--checkpoint") && i + 1 < args.length) {
+                    options.checkpoint = parseCount(args[++i], 0);
+                } else if (args[i].equals("--predictor") && i + 1 < args.length) {
+                    options.predictor = MotionPredictor.named(args[++i]);
+                } else if (args[i].equals("--frame-memory") && i + 1 < args.length) {
+                    options.frameMemory = (long) parseCount(args[++i], 1) << 20;
+                } else if (args[i].equals("--sub-pixel")) {
+                    options.subPixel = true;
+                } else if (args[i].equals("--motion-mask")) {
+                    options.motionMask = true;
+                } else if (args[i].equals("--metrics")) {
+                    options.metrics = true;
+                } else if (args[i].startsWith("--")) {
+                    // A mistyped option or one missing its value must not be taken for the manifest
+                    System.err.println("Unknown option or missing value: " + args[i]);
+                    usage();
+                    return;
+                } else {
+                    manifest = args[i];
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Also a NumberFormatException, an unknown metric or predictor, or a count below its minimum
+            System.err.println("Invalid value for " + args[i - 1] + ": " + args[i] + " (" + e.getMessage() + ")");
+            usage();
+            return;
+        }
+        if (manifest == null) {
+            usage();
+            return;
+        }
+
+        List<Job> jobs;
+        try {
+            jobs = readManifest(manifest);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error reading manifest: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        System.exit(run(jobs, workers, options) == jobs.size() ? 0 : 1);
+    }
+
+    /**
+     * Utility function to parse a whole number option value
+     * 
+     * @param value the text of the value
+     * @param min   the smallest value allowed
+     * @return the number
+     * @throws IllegalArgumentException if the value is not a number or below min
+     */
+    private static int parseCount(String value, int min) {
+        int count = Integer.parseInt(value.trim());
+        if (count < min) {
+            throw new IllegalArgumentException("must be at least " + min);
+        }
+        return count;
+    }
+
+    /**
+     * Utility function to print the command line options and exit
+     */
+    private static void usage() {
+        System.err.println("Usage: BatchRunner <manifest.csv> [--workers N] [--tolerance T] [--metrics]"
+                + " [--roi x,y,width,height] [--scale S] [--metric rgb|hsv|lab] [--segments N]"
+                + " [--motion-mask] [--path path.csv] [--stride K] [--checkpoint N]"
+                + " [--sub-pixel] [--frame-memory MB] [--predictor linear|kalman]");
+        System.exit(2);
+    }
+
+    /**
+     * Function to process every job on a pool of workers and wait for all of them
+     * 
+     * @param jobs    the jobs to run
+     * @param workers the number of jobs processed at the same time
+     * @param options the settings shared by every job
+     * @return the number of jobs that succeeded
+     */
+    private static int run(List<Job> jobs, int workers, Options options) {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            Job job = jobs.get(i);
+            String label = "[" + (i + 1) + "/" + jobs.size() + "] " + job.input;
+            results.add(pool.submit(() -> runJob(job, options, label)));
+        }
+        pool.shutdown();
+
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            try {
+                if (result.get()) {
+                    succeeded += 1;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println(succeeded + " out of " + jobs.size() + " videos processed successfully");
+        return succeeded;
+    }
+
+    /**
+     * Function to track and render a single video
+     * 
+     * @param job     the video to process
+     * @param options the settings shared by every job
+     * @param label   the prefix of the log lines of this job
+     * @return true if the output video was written
+     */
+    private static boolean runJob(Job job, Options options, String label) throws IOException {
+        long start = System.nanoTime();
+        Tracker tracker = new Tracker(job.input);
+        if (tracker.width <= 0 || tracker.height <= 0 || tracker.fps <= 0) {
+            System.out.println(label + ": could not probe video");
+            return false;
+        }
+        tracker.imageFolder = job.output + ".frames";
+        tracker.verbose = false;
+        tracker.color = job.color;
+        tracker.tolerance = options.tolerance;
+        tracker.colorMetric = options.metric;
+        tracker.ratio = job.ratio;
+        tracker.trackWidth = job.trackWidth;
+        if (options.roi != null) {
+            tracker.setRoi(options.roi[0], options.roi[1], options.roi[0] + options.roi[2],
+                    options.roi[1] + options.roi[3]);
+        }
+        tracker.analysisScale = options.scale;
+        tracker.segments = options.segments;
+        tracker.useMotionMask = options.motionMask;
+        tracker.path = options.path;
+        tracker.maxStride = options.stride;
+        tracker.checkpointInterval = options.checkpoint;
+        tracker.subPixel = options.subPixel;
+        tracker.frameMemory = options.frameMemory;
+        tracker.predictor = options.predictor.fresh();
+        FrameMetrics frameMetrics = options.metrics ? new FrameMetrics() : null;
+        if (frameMetrics != null) {
+            tracker.metrics = frameMetrics;
+        }
+
+        boolean ok = tracker.processTo(job.output);
+        System.out.println(label + " -> " + job.output + ": " + (ok ? "done" : "failed") + " in "
+                + Math.round((System.nanoTime() - start) / 1e9) + "s");
+        if (frameMetrics != null) {
+            frameMetrics.writeAll(job.output + ".metrics");
+            System.out.println(label + ": " + frameMetrics.getFrames() + " frames at "
+                    + Math.round(frameMetrics.getFPS()) + " fps, search p99 "
+                    + Math.round(frameMetrics.latency[1].quantile(0.99) / 1e3) / 1e3 + " ms");
+        }
+        return ok;
+    }
+
+    /**
+     * Utility function to parse the jobs of a manifest file
+     * 
+     * @param path the path of the manifest
+     * @return the jobs in the order of the manifest
+     * @throws IOException if the manifest cannot be read
+     */
+    private static List<Job> readManifest(String path) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number += 1;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length < 4) {
+                    throw new IllegalArgumentException("line " + number + " needs input,output,color,scale");
+                }
+                Job job = new Job();
+                job.input = parts[0].trim();
+                job.output = parts[1].trim();
+                job.color = Integer.parseInt(parts[2].trim().replace("#", ""), 16);
+                job.ratio = Double.parseDouble(parts[3].trim());
+                if (parts.length > 4) {
+                    job.trackWidth = Double.parseDouble(parts[4].trim());
+                }
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+}
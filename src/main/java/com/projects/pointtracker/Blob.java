@@ -0,0 +1,51 @@
+package com.projects.pointtracker;
+
+/**
+ * Connected group of pixels matching a target color, as found by BlobDetector
+ */
+public class Blob {
+
+    // Number of pixels in the blob
+    public long area;
+
+    // Sums of the coordinates of the pixels in the blob
+    public long sumX;
+    public long sumY;
+
+    // Bounding box of the blob, inclusive on both ends
+    public int minX;
+    public int maxX;
+    public int minY;
+    public int maxY;
+
+    /**
+     * Function to get the centroid of the blob
+     * 
+     * @return the {x, y} centroid
+     */
+    public int[] centroid() {
+        return new int[] { (int) (sumX / area), (int) (sumY / area) };
+    }
+
+    /**
+     * Function to get the exact centroid of the blob
+     * 
+     * @return the {x, y} centroid in fractional pixels
+     */
+    public double[] center() {
+        return new double[] { (double) sumX / area, (double) sumY / area };
+    }
+
+    /**
+     * Function to get the squared distance from the centroid of the blob to a point
+     * 
+     * @param x the x coordinate of the point
+     * @param y the y coordinate of the point
+     * @return the squared distance in pixels
+     */
+    public long distanceSq(int x, int y) {
+        long dx = sumX / area - x;
+        long dy = sumY / area - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,228 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single pass connected-components labeler over the pixels of a window that
+ * match a color. Every row is split into runs of matching pixels, each run gets
+ * a label, and labels of runs that touch a run of the row above (8-connected)
+ * are merged with union-find. The buffers are kept between calls, so a detector
+ * must not be shared between threads.
+ */
+public class BlobDetector {
+
+    // Row of packed rgb colors being labeled
+    private int[] row = new int[0];
+
+    // Runs of the previous and current row as {start, end, label} triples, end exclusive
+    private int[] previous = new int[48];
+    private int[] current = new int[48];
+
+    // Union-find parent of every label
+    private int[] parent = new int[64];
+
+    // Statistics of every label before merging
+    private long[] area = new long[64];
+    private long[] sumX = new long[64];
+    private long[] sumY = new long[64];
+    private int[] bounds = new int[256];
+
+    // Number of labels handed out by the last call
+    private int labels;
+
+    /**
+     * Function to find the blobs of matching pixels in a window
+     * 
+     * @param matcher the color test of the target
+     * @param image   the image to label
+     * @param window  the window as {lowerX, upperX, lowerY, upperY}
+     * @return the blobs in the window, in no particular order
+     */
+    public List<Blob> detect(ColorMatcher matcher, BufferedImage image, int[] window) {
+        return detect(matcher, image, window, null);
+    }
+
+    /**
+     * Function to find the blobs of matching pixels in a window, leaving out the
+     * tiles a motion mask saw no change in
+     * 
+     * @param matcher the color test of the target
+     * @param image   the image to label
+     * @param window  the window as {lowerX, upperX, lowerY, upperY}
+     * @param mask    the motion mask of the image, or null to label every pixel
+     * @return the blobs in the window, in no particular order
+     */
+    public List<Blob> detect(ColorMatcher matcher, BufferedImage image, int[] window, MotionMask mask) {
+        int lowerX = window[0];
+        int upperX = window[1];
+        labels = 0;
+        if (lowerX >= upperX || window[2] >= window[3]) {
+            return new ArrayList<>();
+        }
+        if (row.length < upperX - lowerX) {
+            row = new int[upperX - lowerX];
+        }
+        int tile = MotionMask.TILE;
+        int firstTile = lowerX / tile;
+        boolean[] open = mask == null ? null : new boolean[(upperX - 1) / tile - firstTile + 1];
+
+        int previousRuns = 0;
+        for (int y = window[2]; y < window[3]; y++) {
+            if (open != null && (y == window[2] || y % tile == 0)) {
+                for (int t = 0; t < open.length; t++) {
+                    open[t] = mask.changed(firstTile + t, y / tile);
+                }
+            }
+            PixelScanner.readRow(image, y, lowerX, upperX, row);
+            int runs = 0;
+            int p = 0;
+            int x = lowerX;
+            while (x < upperX) {
+                if (open != null && !open[x / tile - firstTile]) {
+                    x = (x / tile + 1) * tile;
+                    continue;
+                }
+                if (!matcher.matches(row[x - lowerX])) {
+                    x += 1;
+                    continue;
+                }
+                int start = x;
+                while (x < upperX && (open == null || open[x / tile - firstTile])
+                        && matcher.matches(row[x - lowerX])) {
+                    x += 1;
+                }
+                int label = newLabel(start, x, y);
+
+                // Runs of the row above overlapping [start - 1, x] touch this run, diagonals included
+                while (p < previousRuns && previous[p * 3 + 1] < start) {
+                    p += 1;
+                }
+                for (int q = p; q < previousRuns && previous[q * 3] <= x; q++) {
+                    union(label, previous[q * 3 + 2]);
+                }
+
+                if ((runs + 1) * 3 > current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[runs * 3] = start;
+                current[runs * 3 + 1] = x;
+                current[runs * 3 + 2] = label;
+                runs += 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+            previousRuns = runs;
+        }
+        return collect();
+    }
+
+    /**
+     * Function to pick the blob nearest to a point. Blobs smaller than minArea
+     * are only picked if there is no larger one, so stray pixels next to the
+     * prediction do not take over from the point itself.
+     * 
+     * @param blobs   the blobs to choose from
+     * @param x       the x coordinate of the point
+     * @param y       the y coordinate of the point
+     * @param minArea the smallest area of a blob that is not noise
+     * @return the nearest blob, or null if there are none
+     */
+    public static Blob nearest(List<Blob> blobs, int x, int y, long minArea) {
+        Blob best = null;
+        for (Blob blob : blobs) {
+            if (best == null) {
+                best = blob;
+                continue;
+            }
+            boolean large = blob.area >= minArea;
+            boolean bestLarge = best.area >= minArea;
+            if (large != bestLarge ? large : blob.distanceSq(x, y) < best.distanceSq(x, y)) {
+                best = blob;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Utility function to start a label for a run
+     */
+    private int newLabel(int start, int end, int y) {
+        int label = labels++;
+        if (label >= parent.length) {
+            int size = parent.length * 2;
+            parent = Arrays.copyOf(parent, size);
+            area = Arrays.copyOf(area, size);
+            sumX = Arrays.copyOf(sumX, size);
+            sumY = Arrays.copyOf(sumY, size);
+            bounds = Arrays.copyOf(bounds, size * 4);
+        }
+        long length = end - start;
+        parent[label] = label;
+        area[label] = length;
+        // Sum of start, start + 1, ..., end - 1
+        sumX[label] = (start + (long) end - 1) * length / 2;
+        sumY[label] = length * y;
+        bounds[label * 4] = start;
+        bounds[label * 4 + 1] = end - 1;
+        bounds[label * 4 + 2] = y;
+        bounds[label * 4 + 3] = y;
+        return label;
+    }
+
+    /**
+     * Utility function to merge the groups of two labels
+     */
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB) {
+            // Keep the older label as the root so roots stay stable while a row is labeled
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * Utility function to find the root of a label, halving the path on the way
+     */
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Utility function to fold the statistics of every label into its root and
+     * turn the roots into blobs
+     */
+    private List<Blob> collect() {
+        List<Blob> blobs = new ArrayList<>();
+        Blob[] byRoot = new Blob[labels];
+        for (int label = 0; label < labels; label++) {
+            int root = find(label);
+            Blob blob = byRoot[root];
+            if (blob == null) {
+                blob = new Blob();
+                blob.minX = Integer.MAX_VALUE;
+                blob.maxX = Integer.MIN_VALUE;
+                blob.minY = Integer.MAX_VALUE;
+                blob.maxY = Integer.MIN_VALUE;
+                byRoot[root] = blob;
+                blobs.add(blob);
+            }
+            blob.area += area[label];
+            blob.sumX += sumX[label];
+            blob.sumY += sumY[label];
+            blob.minX = Math.min(blob.minX, bounds[label * 4]);
+            blob.maxX = Math.max(blob.maxX, bounds[label * 4 + 1]);
+            blob.minY = Math.min(blob.minY, bounds[label * 4 + 2]);
+            blob.maxY = Math.max(blob.maxY, bounds[label * 4 + 3]);
+        }
+        return blobs;
+    }
+}
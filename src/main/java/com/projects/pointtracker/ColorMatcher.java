@@ -0,0 +1,162 @@
+package com.projects.pointtracker;
+
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed color test. In the RGB metric it is equivalent to
+ * {@code colorDiff(color, target) <= tolerance} in {@link Tracker}, using
+ * squared integer distances instead of sqrt and pow. The HSV and LAB metrics are
+ * classified once for all 2^24 colors into a 2 MB bitset, so testing a pixel is
+ * a single bit lookup however expensive the metric is.
+ */
+public class ColorMatcher {
+
+    // Number of colors classified by a lookup table
+    private static final int COLORS = 1 << 24;
+
+    // Integer representation of the target color
+    public final int target;
+
+    // Maximum color difference in percent, as used by Tracker.colorDiff
+    public final double tolerance;
+
+    // Color space the difference is measured in
+    public final ColorMetric metric;
+
+    // Bit c of the table is set if color c matches, or null to compute the rgb distance
+    final long[] table;
+
+    // Channels of the target color
+    final int red;
+    final int green;
+    final int blue;
+
+    // Largest squared rgb distance that is still within the tolerance
+    final int thresholdSq;
+
+    /**
+     * Constructor to create a matcher for a target color and tolerance
+     * 
+     * @param target    the integer representation of the target color
+     * @param tolerance the maximum color difference in percent
+     */
+    public ColorMatcher(int target, double tolerance) {
+        this(target, tolerance, ColorMetric.RGB);
+    }
+
+    /**
+     * Constructor to create a matcher for a target color and tolerance in a color
+     * metric. The lookup table of HSV and LAB is built here, in parallel.
+     * 
+     * @param target    the integer representation of the target color
+     * @param tolerance the maximum color difference, see ColorMetric
+     * @param metric     the color space to compare colors in
+     */
+    public ColorMatcher(int target, double tolerance, ColorMetric metric) {
+        this.target = target;
+        this.tolerance = tolerance;
+        this.metric = metric;
+        this.red = (target & 0x00ff0000) >> 16;
+        this.green = (target & 0x0000ff00) >> 8;
+        this.blue = target & 0x000000ff;
+        this.thresholdSq = squaredThreshold(tolerance);
+        this.table = metric == ColorMetric.RGB ? null : buildTable();
+    }
+
+    /**
+     * Utility function to test whether a color is within the tolerance of the
+     * target
+     * 
+     * @param color the integer representation of the color to test
+     * @return true if the color matches the target
+     */
+    public boolean matches(int color) {
+        if (table != null) {
+            return (table[(color & 0xffffff) >>> 6] >>> color & 1) != 0;
+        }
+        int dr = ((color & 0x00ff0000) >> 16) - red;
+        int dg = ((color & 0x0000ff00) >> 8) - green;
+        int db = (color & 0x000000ff) - blue;
+        return dr * dr + dg * dg + db * db <= thresholdSq;
+    }
+
+    /**
+     * Utility function to classify every color in the metric. Each word of the
+     * table holds 64 colors that only differ in blue and is filled by a single
+     * task.
+     * 
+     * @return the bitset of matching colors
+     */
+    private long[] buildTable() {
+        long[] bits = new long[COLORS / 64];
+        double[] reference = new double[3];
+        if (metric == ColorMetric.HSV) {
+            ColorMetric.toHSV(red, green, blue, reference);
+        } else {
+            ColorMetric.toLab(red, green, blue, reference);
+        }
+        double hueBand = tolerance / 100 * 180;
+        // A gray, white or black target has no hue, so it is matched by value and a low chroma instead
+        boolean neutral = metric == ColorMetric.HSV && reference[1] == 0;
+        double band = tolerance / 100;
+
+        IntStream.range(0, bits.length).parallel().forEach(word -> {
+            double[] c = new double[3];
+            int first = word << 6;
+            if (metric == ColorMetric.LAB) {
+                // Lightness rises with blue, so the ends of the word bound it for all 64 colors
+                int r = first >> 16;
+                int g = (first >> 8) & 0xff;
+                if (ColorMetric.lightness(r, g, first & 0xff) > reference[0] + tolerance
+                        || ColorMetric.lightness(r, g, (first & 0xff) + 63) < reference[0] - tolerance) {
+                    return;
+                }
+            }
+            long mask = 0;
+            for (int bit = 0; bit < 64; bit++) {
+                int color = first + bit;
+                int r = color >> 16;
+                int g = (color >> 8) & 0xff;
+                int b = color & 0xff;
+                boolean match;
+                if (metric == ColorMetric.HSV) {
+                    ColorMetric.toHSV(r, g, b, c);
+                    if (neutral) {
+                        match = c[1] * c[2] <= band && Math.abs(c[2] - reference[2]) <= band;
+                    } else {
+                        double dh = Math.abs(c[0] - reference[0]);
+                        match = Math.min(dh, 360 - dh) <= hueBand && c[1] >= reference[1] / 2
+                                && c[2] >= reference[2] / 4 && c[1] > 0;
+                    }
+                } else {
+                    match = ColorMetric.withinDeltaE(r, g, b, reference, tolerance);
+                }
+                if (match) {
+                    mask |= 1L << bit;
+                }
+            }
+            bits[word] = mask;
+        });
+        return bits;
+    }
+
+    /**
+     * Utility function to convert a percentage tolerance into a squared rgb
+     * distance. The threshold is found by evaluating the same floating point
+     * expression as Tracker.colorDiff, so both agree exactly at the boundary.
+     * 
+     * @param tolerance the maximum color difference in percent
+     * @return the largest squared distance within the tolerance, or -1 if none is
+     */
+    public static int squaredThreshold(double tolerance) {
+        double max = Math.sqrt(Math.pow(255, 2) + Math.pow(255, 2) + Math.pow(255, 2));
+        int threshold = -1;
+        for (int d = 0; d <= 3 * 255 * 255; d++) {
+            if (Math.sqrt(d) / max * 100 > tolerance) {
+                break;
+            }
+            threshold = d;
+        }
+        return threshold;
+    }
+}
@@ -0,0 +1,125 @@
+package com.projects.pointtracker;
+
+/**
+ * Ways a pixel can be compared to the target color. The tolerance
+ * is read differently by each metric.
+ */
+public enum ColorMetric {
+
+    // Euclidean rgb distance in percent of the largest one, as in Tracker.colorDiff
+    RGB,
+
+    // Hue within tolerance percent of 180 degrees of the target hue, with at least half its saturation and a
+    // quarter of its value, so shading and highlights still match. A gray target has no hue and matches colors
+    // whose chroma and distance in value are both within tolerance percent instead
+    HSV,
+
+    // CIE76 difference in CIELAB below the tolerance, which is close to perceived color difference
+    LAB;
+
+    // sRGB channel values converted to linear light
+    private static final double[] LINEAR = new double[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double c = i / 255.0;
+            LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    /**
+     * Utility function to convert a color to hue, saturation and value
+     * 
+     * @param red   the red channel
+     * @param green the green channel
+     * @param blue  the blue channel
+     * @param hsv   the array to write {hue in degrees, saturation, value} into
+     */
+    public static void toHSV(int red, int green, int blue, double[] hsv) {
+        int max = Math.max(red, Math.max(green, blue));
+        int min = Math.min(red, Math.min(green, blue));
+        double delta = max - min;
+        double hue = 0;
+        if (delta > 0) {
+            if (max == red) {
+                hue = 60 * (((green - blue) / delta) % 6);
+            } else if (max == green) {
+                hue = 60 * ((blue - red) / delta + 2);
+            } else {
+                hue = 60 * ((red - green) / delta + 4);
+            }
+        }
+        hsv[0] = hue < 0 ? hue + 360 : hue;
+        hsv[1] = max == 0 ? 0 : delta / max;
+        hsv[2] = max / 255.0;
+    }
+
+    /**
+     * Utility function to convert an sRGB color to CIELAB under the D65 white
+     * point
+     * 
+     * @param red   the red channel
+     * @param green the green channel
+     * @param blue  the blue channel
+     * @param lab   the array to write {L, a, b} into
+     */
+    public static void toLab(int red, int green, int blue, double[] lab) {
+        double r = LINEAR[red];
+        double g = LINEAR[green];
+        double b = LINEAR[blue];
+        double fx = labCurve((0.4124 * r + 0.3576 * g + 0.1805 * b) / 0.95047);
+        double fy = labCurve(0.2126 * r + 0.7152 * g + 0.0722 * b);
+        double fz = labCurve((0.0193 * r + 0.1192 * g + 0.9505 * b) / 1.08883);
+        lab[0] = 116 * fy - 16;
+        lab[1] = 500 * (fx - fy);
+        lab[2] = 200 * (fy - fz);
+    }
+
+    /**
+     * Utility function to get the CIELAB lightness of an sRGB color, which grows
+     * with every channel
+     * 
+     * @param red   the red channel
+     * @param green the green channel
+     * @param blue  the blue channel
+     * @return the lightness L between 0 and 100
+     */
+    public static double lightness(int red, int green, int blue) {
+        return 116 * labCurve(0.2126 * LINEAR[red] + 0.7152 * LINEAR[green] + 0.0722 * LINEAR[blue]) - 16;
+    }
+
+    /**
+     * Utility function to test whether the CIE76 difference between an sRGB color
+     * and a CIELAB reference is within a tolerance. Lightness is compared first,
+     * which rules out most colors before the other two cube roots.
+     * 
+     * @param red       the red channel
+     * @param green     the green channel
+     * @param blue      the blue channel
+     * @param reference the {L, a, b} of the reference color
+     * @param tolerance the largest difference that still matches
+     * @return true if the color is within the tolerance
+     */
+    public static boolean withinDeltaE(int red, int green, int blue, double[] reference, double tolerance) {
+        double r = LINEAR[red];
+        double g = LINEAR[green];
+        double b = LINEAR[blue];
+        double fy = labCurve(0.2126 * r + 0.7152 * g + 0.0722 * b);
+        double dl = 116 * fy - 16 - reference[0];
+        if (Math.abs(dl) > tolerance) {
+            return false;
+        }
+        double fx = labCurve((0.4124 * r + 0.3576 * g + 0.1805 * b) / 0.95047);
+        double fz = labCurve((0.0193 * r + 0.1192 * g + 0.9505 * b) / 1.08883);
+        double da = 500 * (fx - fy) - reference[1];
+        double db = 200 * (fy - fz) - reference[2];
+        return dl * dl + da * da + db * db <= tolerance * tolerance;
+    }
+
+    /**
+     * Utility function for the nonlinear part of the XYZ to CIELAB conversion
+     */
+    private static double labCurve(double t) {
+        return t > 216.0 / 24389 ? Math.cbrt(t) : (24389.0 / 27 * t + 16) / 116;
+    }
+}
@@ -0,0 +1,105 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Frame sink that pipes raw bgr24 frames into the stdin of an ffmpeg libx264
+ * encoder. Writes block while ffmpeg is behind, so the tracker never runs
+ * further ahead of the encoder than the pipe buffer.
+ */
+public class EncoderSink implements FrameSink {
+
+    // The video file being written
+    private final File outputFile;
+
+    // The running ffmpeg encoder process
+    private final Process process;
+
+    // Raw frame stream into the encoder
+    private final OutputStream output;
+
+    // Number of bytes in one frame
+    private final int frameLength;
+
+    /**
+     * Constructor to start an encoder for a video of the given size and fps
+     * 
+     * @param outputFile the path of the video file to write
+     * @param width      the width of the frames
+     * @param height     the height of the frames
+     * @param fps        the frame rate of the output video
+     * @throws IOException if ffmpeg could not be started
+     */
+    public EncoderSink(String outputFile, int width, int height, double fps) throws IOException {
+        this.outputFile = new File(outputFile);
+        this.frameLength = width * height * 3;
+        this.process = new ProcessBuilder(
+                "ffmpeg",
+                "-y", "-v", "error",
+                "-f", "rawvideo",
+                "-pix_fmt", "bgr24",
+                "-s", width + "x" + height,
+                "-framerate", String.valueOf(fps),
+                "-i", "-",
+                "-c:v", "libx264",
+                "-crf", "18",
+                "-preset", "slow",
+                "-pix_fmt", "yuv420p",
+                outputFile).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        this.output = process.getOutputStream();
+    }
+
+    @Override
+    public void write(BufferedImage frame) throws IOException {
+        byte[] data = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        output.write(data, 0, frameLength);
+    }
+
+    /**
+     * Function to flush the last frames and wait for the encoder to finish the
+     * video file
+     */
+    @Override
+    public void close() throws IOException {
+        output.close();
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode == 0) {
+                System.out.println("Video reconstruction completed successfully.");
+            } else {
+                throw new IOException("Video reconstruction failed with code: " + exitCode);
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the encoder", e);
+        }
+    }
+
+    /**
+     * Function to kill the encoder before it finishes the video and delete the
+     * partial output file, so a failed or cancelled run leaves no truncated video
+     */
+    @Override
+    public void abort() {
+        process.destroyForcibly();
+        try {
+            output.close();
+        } catch (IOException e) {
+            // The pipe is broken once ffmpeg is gone, and nothing is left to flush
+        }
+        try {
+            process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!outputFile.delete() && outputFile.exists()) {
+            System.err.println("Could not delete the partial video " + outputFile);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Frame source that streams raw bgr24 frames from the stdout of an ffmpeg
+ * process. A decoder that fails partway is reported as an error with its
+ * stderr, not as the end of a short video.
+ */
+public class FfmpegFrameSource implements FrameSource {
+
+    // The running ffmpeg decoder process
+    private final Process process;
+
+    // Raw frame stream from the decoder
+    private final InputStream input;
+
+    // The width and height of the decoded frames
+    private final int width;
+    private final int height;
+
+    // Thread copying the stderr of the decoder into errors
+    private final Thread errorReader;
+
+    // Everything the decoder wrote to stderr
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    // Whether the decoder has closed its stdout, so its exit value tells how it ended
+    private boolean ended = false;
+
+    /**
+     * Constructor to start decoding a video file
+     * 
+     * @param inputPath the path of the input video
+     * @param width     the width of the video frames
+     * @param height    the height of the video frames
+     * @throws IOException if ffmpeg could not be started
+     */
+    public FfmpegFrameSource(String inputPath, int width, int height) throws IOException {
+        this(inputPath, width, height, null);
+    }
+
+    /**
+     * Constructor to start decoding a video file through an ffmpeg filter graph,
+     * e.g. to crop and scale the frames before they reach the pipe
+     * 
+     * @param inputPath the path of the input video
+     * @param width     the width of the frames out of the filter graph
+     * @param height    the height of the frames out of the filter graph
+     * @param filter    the -vf filter graph, or null to decode the frames as they are
+     * @throws IOException if ffmpeg could not be started
+     */
+    public FfmpegFrameSource(String inputPath, int width, int height, String filter) throws IOException {
+        this(inputPath, width, height, filter, 0, -1);
+    }
+
+    /**
+     * Constructor to start decoding part of a video file. The seek is an input
+     * option, so ffmpeg jumps to the keyframe before it and decodes only from
+     * there, dropping the frames before the start.
+     * 
+     * @param inputPath the path of the input video
+     * @param width     the width of the frames out of the filter graph
+     * @param height    the height of the frames out of the filter graph
+     * @param filter    the -vf filter graph, or null to decode the frames as they are
+     * @param start     the time of the first frame in seconds
+     * @param frames    the number of frames to decode, or -1 to decode to the end
+     * @throws IOException if ffmpeg could not be started
+     */
+    public FfmpegFrameSource(String inputPath, int width, int height, String filter, double start, int frames)
+            throws IOException {
+        this.width = width;
+        this.height = height;
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-v", "error"));
+        if (start > 0) {
+            command.addAll(List.of("-ss", String.format(Locale.ROOT, "%.6f", start)));
+        }
+        command.addAll(List.of("-i", inputPath));
+        if (filter != null) {
+            command.addAll(List.of("-vf", filter));
+        }
+        if (frames >= 0) {
+            command.addAll(List.of("-frames:v", Integer.toString(frames)));
+        }
+        command.addAll(List.of("-f", "rawvideo", "-pix_fmt", "bgr24", "-"));
+        this.process = new ProcessBuilder(command).start();
+        this.input = process.getInputStream();
+        this.errorReader = Threads.IO.newThread(this::readErrors);
+        errorReader.setName("ffmpeg-stderr");
+        errorReader.start();
+    }
+
+    /**
+     * Utility function to keep the stderr of the decoder, echoing it as it
+     * arrives so it shows up as it did when it was inherited
+     */
+    private void readErrors() {
+        byte[] buffer = new byte[4096];
+        try (InputStream stderr = process.getErrorStream()) {
+            int n;
+            while ((n = stderr.read(buffer)) > 0) {
+                System.err.write(buffer, 0, n);
+                synchronized (errors) {
+                    errors.write(buffer, 0, n);
+                }
+            }
+        } catch (IOException e) {
+            // The stream is closed when the decoder is destroyed
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Function to read the next raw frame directly into the backing array of the
+     * frame. bgr24 has the same byte layout as TYPE_3BYTE_BGR so no conversion is
+     * needed.
+     */
+    @Override
+    public boolean read(BufferedImage frame) throws IOException {
+        byte[] data = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        int length = width * height * 3;
+        int read = input.readNBytes(data, 0, length);
+        if (read == length) {
+            return true;
+        }
+        ended = true;
+        checkExit();
+        if (read > 0) {
+            throw new IOException("Truncated frame: read " + read + " of " + length + " bytes");
+        }
+        return false;
+    }
+
+    /**
+     * Function to stop the decoder. If it had already ended its exit value is
+     * checked, otherwise the frames were not all wanted and it is destroyed.
+     */
+    @Override
+    public void close() throws IOException {
+        input.close();
+        if (!ended) {
+            process.destroy();
+            return;
+        }
+        checkExit();
+    }
+
+    /**
+     * Utility function to wait for the decoder once its output has ended
+     * 
+     * @throws IOException with the stderr of ffmpeg if it did not exit cleanly
+     */
+    private void checkExit() throws IOException {
+        try {
+            int exitCode = process.waitFor();
+            errorReader.join();
+            if (exitCode != 0) {
+                String message;
+                synchronized (errors) {
+                    message = errors.toString(StandardCharsets.UTF_8).trim();
+                }
+                throw new IOException("Video decoding failed with code: " + exitCode
+                        + (message.isEmpty() ? "" : ": " + message));
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the decoder", e);
+        }
+    }
+}
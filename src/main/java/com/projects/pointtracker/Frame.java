@@ -0,0 +1,45 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Recyclable frame buffer passed between the stages of the tracking pipeline
+ */
+public class Frame {
+
+    // Decoded pixels of the frame, annotated in place before encoding
+    public final BufferedImage image;
+
+    // Pixels the points are tracked in: the frame itself, a view of its region of interest or a downscaled copy
+    public BufferedImage analysis;
+
+    // 0-based position of the frame in the video
+    public int index;
+
+    // Tracked coordinates of each target in this frame, null for a target that was lost
+    public int[][] coords;
+
+    // Tracked coordinates of each target in the previous frame, or null for the first frame
+    public int[][] prevCoords;
+
+    // Deviation of each target from the reference path, in the columns of PathAnalytics, or null without a path
+    public double[][] analytics;
+
+    // Time spent decoding, tracking and annotating this frame, only measured when metrics are enabled
+    public long decodeNanos;
+    public long searchNanos;
+    public long annotateNanos;
+
+    // Search effort of the tracking stage over all targets
+    public int iterations;
+    public long pixels;
+
+    /**
+     * Constructor to wrap a frame buffer
+     * 
+     * @param image the frame buffer, as returned by FrameSource.createFrame
+     */
+    public Frame(BufferedImage image) {
+        this.image = image;
+    }
+}
@@ -0,0 +1,190 @@
+package com.projects.pointtracker;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Metrics that keep every frame of a run along with running histograms of each
+ * stage, the search effort and the throughput. The frames can be exported as
+ * CSV, the summary as JSON and as a Prometheus text-format file.
+ */
+public class FrameMetrics implements Metrics {
+
+    // Names of the timed stages, in the order of the columns
+    public static final String[] STAGES = { "decode", "search", "annotate", "encode" };
+
+    // Latency histogram of each stage in nanoseconds
+    public final Histogram[] latency = { new Histogram(), new Histogram(), new Histogram(), new Histogram() };
+
+    // Histogram of the findPoint iterations per frame
+    public final Histogram iterations = new Histogram();
+
+    // Histogram of the pixels scanned per frame
+    public final Histogram pixels = new Histogram();
+
+    // Per-frame rows of {index, decode, search, annotate, encode, iterations, pixels}
+    private long[][] rows = new long[256][];
+
+    // Number of frames recorded
+    private int frames;
+
+    // Clock at the start and end of the run
+    private long startNanos;
+    private long endNanos;
+
+    @Override
+    public synchronized void start() {
+        startNanos = System.nanoTime();
+        endNanos = 0;
+    }
+
+    @Override
+    public synchronized void frame(int index, long decodeNanos, long searchNanos, long annotateNanos,
+            long encodeNanos, int iterations, long pixels) {
+        if (frames == rows.length) {
+            rows = Arrays.copyOf(rows, frames * 2);
+        }
+        rows[frames++] = new long[] { index, decodeNanos, searchNanos, annotateNanos, encodeNanos, iterations,
+                pixels };
+        latency[0].record(decodeNanos);
+        latency[1].record(searchNanos);
+        latency[2].record(annotateNanos);
+        latency[3].record(encodeNanos);
+        this.iterations.record(iterations);
+        this.pixels.record(pixels);
+    }
+
+    @Override
+    public synchronized void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * Function to get the number of frames recorded
+     * 
+     * @return the number of frames
+     */
+    public synchronized int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Function to get the throughput of the run, up to now if it has not finished
+     * 
+     * @return the frames written per second of wall time
+     */
+    public synchronized double getFPS() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return end > startNanos ? frames / ((end - startNanos) / 1e9) : 0;
+    }
+
+    /**
+     * Function to write one line per frame as CSV
+     * 
+     * @param path the path of the CSV file
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void writeCSV(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            out.println("frame,decode_ns,search_ns,annotate_ns,encode_ns,iterations,pixels");
+            for (int i = 0; i < frames; i++) {
+                long[] row = rows[i];
+                out.println(row[0] + "," + row[1] + "," + row[2] + "," + row[3] + "," + row[4] + "," + row[5] + ","
+                        + row[6]);
+            }
+        }
+    }
+
+    /**
+     * Function to write the summary of the run as JSON
+     * 
+     * @param path the path of the JSON file
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void writeJSON(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            out.println("{");
+            out.println("  \"frames\": " + frames + ",");
+            out.println("  \"fps\": " + format(getFPS()) + ",");
+            out.println("  \"stages\": {");
+            for (int i = 0; i < STAGES.length; i++) {
+                Histogram h = latency[i];
+                out.println("    \"" + STAGES[i] + "\": { \"mean_ms\": " + format(h.mean() / 1e6) + ", \"p50_ms\": "
+                        + format(h.quantile(0.5) / 1e6) + ", \"p99_ms\": " + format(h.quantile(0.99) / 1e6)
+                        + ", \"max_ms\": " + format(h.max / 1e6) + " }" + (i < STAGES.length - 1 ? "," : ""));
+            }
+            out.println("  },");
+            out.println("  \"iterations\": { \"mean\": " + format(iterations.mean()) + ", \"p50\": "
+                    + iterations.quantile(0.5) + ", \"p99\": " + iterations.quantile(0.99) + ", \"max\": "
+                    + iterations.max + " },");
+            out.println("  \"pixels\": { \"total\": " + pixels.sum + ", \"mean\": " + format(pixels.mean())
+                    + ", \"p50\": " + pixels.quantile(0.5) + ", \"p99\": " + pixels.quantile(0.99) + ", \"max\": "
+                    + pixels.max + " }");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Function to write the summary of the run in the Prometheus text format, e.g.
+     * for the node exporter textfile collector
+     * 
+     * @param path the path of the .prom file
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void writePrometheus(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            out.println("# HELP pointtracker_stage_seconds Time spent on a frame by each pipeline stage");
+            out.println("# TYPE pointtracker_stage_seconds summary");
+            for (int i = 0; i < STAGES.length; i++) {
+                Histogram h = latency[i];
+                String stage = "stage=\"" + STAGES[i] + "\"";
+                out.println("pointtracker_stage_seconds{" + stage + ",quantile=\"0.5\"} "
+                        + format(h.quantile(0.5) / 1e9));
+                out.println("pointtracker_stage_seconds{" + stage + ",quantile=\"0.99\"} "
+                        + format(h.quantile(0.99) / 1e9));
+                out.println("pointtracker_stage_seconds_sum{" + stage + "} " + format(h.sum / 1e9));
+                out.println("pointtracker_stage_seconds_count{" + stage + "} " + h.count);
+            }
+            out.println("# HELP pointtracker_search_iterations findPoint iterations per frame");
+            out.println("# TYPE pointtracker_search_iterations summary");
+            out.println("pointtracker_search_iterations{quantile=\"0.5\"} " + iterations.quantile(0.5));
+            out.println("pointtracker_search_iterations{quantile=\"0.99\"} " + iterations.quantile(0.99));
+            out.println("pointtracker_search_iterations_sum " + iterations.sum);
+            out.println("pointtracker_search_iterations_count " + iterations.count);
+            out.println("# HELP pointtracker_pixels_scanned_total Pixels scanned while searching");
+            out.println("# TYPE pointtracker_pixels_scanned_total counter");
+            out.println("pointtracker_pixels_scanned_total " + pixels.sum);
+            out.println("# HELP pointtracker_frames_total Frames written");
+            out.println("# TYPE pointtracker_frames_total counter");
+            out.println("pointtracker_frames_total " + frames);
+            out.println("# HELP pointtracker_frames_per_second Throughput of the run");
+            out.println("# TYPE pointtracker_frames_per_second gauge");
+            out.println("pointtracker_frames_per_second " + format(getFPS()));
+        }
+    }
+
+    /**
+     * Function to write the CSV, JSON and Prometheus files next to each other
+     * 
+     * @param prefix the path of the files without extension
+     * @throws IOException if a file cannot be written
+     */
+    public void writeAll(String prefix) throws IOException {
+        writeCSV(prefix + ".csv");
+        writeJSON(prefix + ".json");
+        writePrometheus(prefix + ".prom");
+    }
+
+    /**
+     * Utility function to format a number independently of the locale
+     * 
+     * @param value the number to format
+     * @return the number with up to 6 decimals
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6f", value).replaceAll("\\.?0+$", "");
+    }
+}
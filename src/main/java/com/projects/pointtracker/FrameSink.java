@@ -0,0 +1,32 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination for annotated video frames produced by the tracker
+ */
+public interface FrameSink extends Closeable {
+
+    /**
+     * Function to append a frame to the output. The frame buffer may be reused by
+     * the caller as soon as this returns.
+     * 
+     * @param frame the frame to write
+     * @throws IOException if the frame could not be written
+     */
+    void write(BufferedImage frame) throws IOException;
+
+    /**
+     * Function to give up on the output after a failure or a cancel, instead of
+     * closing it as a finished video. By default the sink is simply closed.
+     */
+    default void abort() {
+        try {
+            close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
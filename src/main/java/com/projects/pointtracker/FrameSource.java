@@ -0,0 +1,43 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of decoded video frames for the tracker
+ */
+public interface FrameSource extends Closeable {
+
+    /**
+     * Getter function for the width of the frames in this source
+     * 
+     * @return the frame width in pixels
+     */
+    int getWidth();
+
+    /**
+     * Getter function for the height of the frames in this source
+     * 
+     * @return the frame height in pixels
+     */
+    int getHeight();
+
+    /**
+     * Utility function to allocate a frame buffer that can be passed to read
+     * 
+     * @return a new frame buffer of the size of this source
+     */
+    default BufferedImage createFrame() {
+        return new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    /**
+     * Function to decode the next frame of the video into an existing buffer
+     * 
+     * @param frame the frame buffer to overwrite, as returned by createFrame
+     * @return true if a frame was read, false at the end of the video
+     * @throws IOException if the frame could not be decoded
+     */
+    boolean read(BufferedImage frame) throws IOException;
+}
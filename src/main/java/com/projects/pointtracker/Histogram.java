@@ -0,0 +1,97 @@
+package com.projects.pointtracker;
+
+/**
+ * Log-bucketed histogram of non-negative values. Every power of two is split
+ * into 8 linear buckets, so quantiles are accurate to within 12.5% in constant
+ * memory however many values are recorded.
+ */
+public class Histogram {
+
+    // Number of linear buckets per power of two, as a power of two
+    private static final int SUB_BITS = 3;
+
+    // Number of values in each bucket
+    private final long[] counts = new long[64 << SUB_BITS];
+
+    // Number of values recorded
+    public long count;
+
+    // Sum of the values recorded
+    public long sum;
+
+    // Largest value recorded
+    public long max;
+
+    /**
+     * Function to add a value to the histogram
+     * 
+     * @param value the value to record, negative values count as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts[bucket(value)] += 1;
+        count += 1;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Function to estimate a quantile of the recorded values
+     * 
+     * @param q the quantile between 0 and 1, e.g. 0.99 for p99
+     * @return the upper bound of the bucket holding the quantile, or 0 if empty
+     */
+    public long quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Function to get the mean of the recorded values
+     * 
+     * @return the mean, or 0 if empty
+     */
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Utility function to get the bucket of a value
+     * 
+     * @param value the non-negative value
+     * @return the index of its bucket
+     */
+    private static int bucket(long value) {
+        if (value < (1 << SUB_BITS)) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & ((1 << SUB_BITS) - 1));
+    }
+
+    /**
+     * Utility function to get the largest value that falls into a bucket
+     * 
+     * @param index the index of the bucket
+     * @return the inclusive upper bound of the bucket
+     */
+    private static long upperBound(int index) {
+        if (index < (1 << SUB_BITS)) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        long lower = ((long) ((1 << SUB_BITS) + (index & ((1 << SUB_BITS) - 1)))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,71 @@
+package com.projects.pointtracker;
+
+import javax.imageio.ImageIO;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Frame source that reads frames extracted as PNGs into a folder. Only used in
+ * the debug mode of the tracker.
+ */
+public class ImageFolderFrameSource implements FrameSource {
+
+    // The frame files in playback order
+    private final File[] files;
+
+    // Index of the next file to read
+    private int next = 0;
+
+    // The width and height of the frames
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructor to create a frame source from a folder of extracted frames
+     * 
+     * @param folder the folder containing the frame_%04d.png files
+     * @throws IOException if the folder is empty or cannot be read
+     */
+    public ImageFolderFrameSource(String folder) throws IOException {
+        File[] listed = new File(folder).listFiles((dir, name) -> name.endsWith(".png"));
+        if (listed == null || listed.length == 0) {
+            throw new IOException("No frames found in " + folder);
+        }
+        Arrays.sort(listed);
+        this.files = listed;
+
+        BufferedImage first = ImageIO.read(files[0]);
+        this.width = first.getWidth();
+        this.height = first.getHeight();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean read(BufferedImage frame) throws IOException {
+        if (next >= files.length) {
+            return false;
+        }
+        BufferedImage image = ImageIO.read(files[next++]);
+        Graphics g = frame.getGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,38 @@
+package com.projects.pointtracker;
+
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Frame sink that writes every frame as a PNG into the imageFolder of the
+ * tracker. Only used in the debug mode of the tracker.
+ */
+public class ImageFolderSink implements FrameSink {
+
+    // Folder to write the frames into
+    private final String folder;
+
+    // Number of frames written so far
+    private int counter = 0;
+
+    /**
+     * Constructor to create a sink writing into a folder
+     * 
+     * @param folder the folder to write the frame_%04d.png files into
+     */
+    public ImageFolderSink(String folder) {
+        this.folder = folder;
+    }
+
+    @Override
+    public void write(BufferedImage frame) throws IOException {
+        ImageIO.write(frame, "png", new File(Tracker.framePath(folder, ++counter)));
+    }
+
+    @Override
+    public void close() {
+    }
+}
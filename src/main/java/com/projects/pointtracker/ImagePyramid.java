@@ -0,0 +1,140 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+
+/**
+ * Downsampled copies of a frame at 1/4 and 1/16 of its width and height, used to
+ * re-acquire a lost point cheaply. Levels are point sampled rather than averaged
+ * so a coarse pixel keeps a true color of the frame, and are only built when a
+ * search needs them.
+ */
+public class ImagePyramid {
+
+    // Downsampling factor of each level, from finest to coarsest
+    public static final int[] FACTORS = { 4, 16 };
+
+    // Side of the cells that coarse matches are grouped into, in coarse pixels
+    public static final int CELL = 4;
+
+    // Frame the levels are sampled from
+    private BufferedImage image;
+
+    // Packed rgb pixels of each level, reused between frames
+    private final int[][] levels = new int[FACTORS.length][];
+
+    // Whether each level has been sampled from the current frame
+    private final boolean[] built = new boolean[FACTORS.length];
+
+    /**
+     * Function to point the pyramid at a new frame, discarding the old levels
+     * 
+     * @param image the frame to sample from
+     */
+    public void reset(BufferedImage image) {
+        this.image = image;
+        for (int i = 0; i < built.length; i++) {
+            built[i] = false;
+        }
+    }
+
+    /**
+     * Getter function for a level of the pyramid, sampling it on first use
+     * 
+     * @param level the index of the level in FACTORS
+     * @return the packed rgb pixels of the level, row-major
+     */
+    public int[] level(int level) {
+        if (!built[level]) {
+            int f = FACTORS[level];
+            int w = image.getWidth() / f;
+            int h = image.getHeight() / f;
+            if (levels[level] == null || levels[level].length < w * h) {
+                levels[level] = new int[w * h];
+            }
+            sample(image, f, w, h, levels[level]);
+            built[level] = true;
+        }
+        return levels[level];
+    }
+
+    /**
+     * Function to find the most likely region of the point, from the coarsest
+     * level to the finest. Matches are grouped into cells of CELL x CELL coarse
+     * pixels and the best cell is picked as by ParallelScan.bestCell.
+     * 
+     * @param matcher the color test of the target
+     * @param predX   the predicted X coordinate
+     * @param predY   the predicted Y coordinate
+     * @return {x, y, radius} of the candidate region in full resolution
+     *         coordinates, or null if no level contains the color
+     */
+    public int[] acquire(ColorMatcher matcher, int predX, int predY) {
+        for (int level = FACTORS.length - 1; level >= 0; level--) {
+            int f = FACTORS[level];
+            int w = image.getWidth() / f;
+            int h = image.getHeight() / f;
+            if (w == 0 || h == 0) {
+                continue;
+            }
+            int[] data = level(level);
+
+            int cw = (w + CELL - 1) / CELL;
+            int ch = (h + CELL - 1) / CELL;
+            long[][] sums = new long[cw * ch][3];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    if (matcher.matches(data[y * w + x])) {
+                        long[] cell = sums[(y / CELL) * cw + x / CELL];
+                        cell[0] += x;
+                        cell[1] += y;
+                        cell[2] += 1;
+                    }
+                }
+            }
+
+            long[] best = ParallelScan.bestCell(sums, cw, CELL, predX / (double) f, predY / (double) f);
+            if (best != null) {
+                return new int[] { (int) (best[0] / best[2]) * f + f / 2, (int) (best[1] / best[2]) * f + f / 2,
+                        CELL * f };
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Utility function to point sample a frame at the centre of every f x f block
+     * 
+     * @param image the frame to sample
+     * @param f     the downsampling factor
+     * @param w     the width of the level
+     * @param h     the height of the level
+     * @param out   the array to write the packed rgb pixels of the level into
+     */
+    private static void sample(BufferedImage image, int f, int w, int h, int[] out) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        if (buffer instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel
+                && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+            int base = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX() * 3;
+            for (int y = 0; y < h; y++) {
+                int i = base + (y * f + f / 2) * stride + (f / 2) * 3;
+                for (int x = 0; x < w; x++, i += f * 3) {
+                    out[y * w + x] = ((data[i + 2] & 0xff) << 16) | ((data[i + 1] & 0xff) << 8) | (data[i] & 0xff);
+                }
+            }
+        } else {
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    out[y * w + x] = image.getRGB(x * f + f / 2, y * f + f / 2);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.projects.pointtracker;
+
+/**
+ * Kalman filter motion model with a constant velocity or constant acceleration
+ * state per axis. The axes are filtered independently, so the uncertainty
+ * ellipse is axis-aligned.
+ */
+public class KalmanPredictor implements MotionPredictor {
+
+    // Number of states per axis: 2 for constant velocity, 3 for constant acceleration
+    private final int order;
+
+    // Variance of the random change in the highest modelled derivative per frame
+    public double processNoise = 4;
+
+    // Variance of the tracked coordinates around the true position, in pixels squared
+    public double measurementNoise = 1;
+
+    // Variance assigned to unobserved states when the filter starts
+    public double initialVariance = 1e4;
+
+    // State estimate per axis: position, velocity and acceleration
+    private final double[][] state = new double[2][];
+
+    // Estimate covariance per axis
+    private final double[][][] covariance = new double[2][][];
+
+    // Number of measurements seen since the last reset
+    private int count = 0;
+
+    /**
+     * Constructor to create a constant velocity filter
+     */
+    public KalmanPredictor() {
+        this(false);
+    }
+
+    /**
+     * Constructor to create a constant velocity or constant acceleration filter
+     * 
+     * @param acceleration true to model acceleration as well as velocity
+     */
+    public KalmanPredictor(boolean acceleration) {
+        this.order = acceleration ? 3 : 2;
+    }
+
+    @Override
+    public String describe() {
+        return getClass().getName() + "(" + order + ", " + processNoise + ", " + measurementNoise + ", "
+                + initialVariance + ")";
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+    }
+
+    @Override
+    public MotionPredictor fresh() {
+        KalmanPredictor copy = new KalmanPredictor(order == 3);
+        copy.processNoise = processNoise;
+        copy.measurementNoise = measurementNoise;
+        copy.initialVariance = initialVariance;
+        return copy;
+    }
+
+    @Override
+    public double[] save() {
+        if (count == 0) {
+            return new double[] { 0 };
+        }
+        // The count, then the state and the covariance of each axis
+        double[] saved = new double[1 + 2 * (order + order * order)];
+        saved[0] = count;
+        int i = 1;
+        for (int axis = 0; axis < 2; axis++) {
+            for (int j = 0; j < order; j++) {
+                saved[i++] = state[axis][j];
+            }
+            for (int j = 0; j < order; j++) {
+                for (int k = 0; k < order; k++) {
+                    saved[i++] = covariance[axis][j][k];
+                }
+            }
+        }
+        return saved;
+    }
+
+    @Override
+    public void restore(double[] saved) {
+        if (saved.length == 1 && saved[0] == 0) {
+            count = 0;
+            return;
+        }
+        if (saved.length != 1 + 2 * (order + order * order)) {
+            throw new IllegalArgumentException("State does not fit a filter of order " + order);
+        }
+        int i = 1;
+        for (int axis = 0; axis < 2; axis++) {
+            state[axis] = new double[order];
+            covariance[axis] = new double[order][order];
+            for (int j = 0; j < order; j++) {
+                state[axis][j] = saved[i++];
+            }
+            for (int j = 0; j < order; j++) {
+                for (int k = 0; k < order; k++) {
+                    covariance[axis][j][k] = saved[i++];
+                }
+            }
+        }
+        count = (int) saved[0];
+    }
+
+    @Override
+    public void update(int[] coords) {
+        for (int axis = 0; axis < 2; axis++) {
+            if (count == 0) {
+                state[axis] = new double[order];
+                state[axis][0] = coords[axis];
+                covariance[axis] = new double[order][order];
+                covariance[axis][0][0] = measurementNoise;
+                for (int i = 1; i < order; i++) {
+                    covariance[axis][i][i] = initialVariance;
+                }
+                continue;
+            }
+            double[] x = transition(state[axis]);
+            double[][] p = transition(covariance[axis], processNoise);
+
+            // Only the position is measured, so the gain is the first column of P over S
+            double s = p[0][0] + measurementNoise;
+            double innovation = coords[axis] - x[0];
+            double[] gain = new double[order];
+            for (int i = 0; i < order; i++) {
+                gain[i] = p[i][0] / s;
+                x[i] += gain[i] * innovation;
+            }
+            double[][] updated = new double[order][order];
+            for (int i = 0; i < order; i++) {
+                for (int j = 0; j < order; j++) {
+                    updated[i][j] = p[i][j] - gain[i] * p[0][j];
+                }
+            }
+            state[axis] = x;
+            covariance[axis] = updated;
+        }
+        count += 1;
+    }
+
+    @Override
+    public int[] predict() {
+        if (count == 0) {
+            return new int[] { 0, 0 };
+        }
+        return new int[] { (int) Math.round(transition(state[0])[0]), (int) Math.round(transition(state[1])[0]) };
+    }
+
+    /**
+     * Function to get the standard deviation of the next measurement, i.e. the
+     * predicted position variance plus the measurement noise. Reported once the
+     * velocity has been observed.
+     */
+    @Override
+    public double[] uncertainty() {
+        if (count < 2) {
+            return null;
+        }
+        return new double[] {
+                Math.sqrt(transition(covariance[0], processNoise)[0][0] + measurementNoise),
+                Math.sqrt(transition(covariance[1], processNoise)[0][0] + measurementNoise) };
+    }
+
+    /**
+     * Utility function to advance a state by one frame
+     * 
+     * @param x the state to advance
+     * @return F x
+     */
+    private double[] transition(double[] x) {
+        double[] next = new double[order];
+        for (int i = 0; i < order; i++) {
+            next[i] = x[i];
+            for (int j = i + 1; j < order; j++) {
+                next[i] += x[j] / factorial(j - i);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Utility function to advance a covariance by one frame
+     * 
+     * @param p     the covariance to advance
+     * @param noise the process noise variance
+     * @return F P F' + Q
+     */
+    private double[][] transition(double[][] p, double noise) {
+        double[][] f = new double[order][order];
+        for (int i = 0; i < order; i++) {
+            for (int j = i; j < order; j++) {
+                f[i][j] = 1.0 / factorial(j - i);
+            }
+        }
+        double[][] next = new double[order][order];
+        for (int i = 0; i < order; i++) {
+            for (int j = 0; j < order; j++) {
+                double sum = 0;
+                for (int k = 0; k < order; k++) {
+                    for (int l = 0; l < order; l++) {
+                        sum += f[i][k] * p[k][l] * f[j][l];
+                    }
+                }
+                next[i][j] = sum;
+            }
+        }
+        // Discrete white noise on the highest derivative, spread through the lower states
+        double[] g = new double[order];
+        for (int i = 0; i < order; i++) {
+            g[i] = 1.0 / factorial(order - 1 - i);
+        }
+        for (int i = 0; i < order; i++) {
+            for (int j = 0; j < order; j++) {
+                next[i][j] += g[i] * g[j] * noise;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Utility function to compute a small factorial
+     * 
+     * @param n the number, at most 2
+     * @return n!
+     */
+    private static double factorial(int n) {
+        return n == 2 ? 2 : 1;
+    }
+}
@@ -0,0 +1,193 @@
+package com.projects.pointtracker;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive schedule of the frames in which each point is fully searched. In
+ * between these keyframes the point is followed from its prediction, either
+ * verified in a window just large enough to hold its blob or, while its
+ * predictions land exactly on it, taken as predicted without reading any
+ * pixels. The distance between the prediction and the point found at each
+ * keyframe sets the stride: it grows by one frame while the residuals stay
+ * small and halves as soon as one does not, so smooth motion in high frame
+ * rate footage is searched rarely and a sudden change is searched again within
+ * a few frames.
+ */
+public class KeyframeSchedule {
+
+    // What to do with a point in a frame
+    public static final int FULL = 0;
+    public static final int VERIFY = 1;
+    public static final int INTERPOLATE = 2;
+
+    // Largest number of frames from one full search of a point to the next
+    public final int maxStride;
+
+    // Largest keyframe residual in pixels that lets the stride grow
+    public double tolerance = 2;
+
+    // Margin in pixels around the blob of a followed point in the verification window, which is also the
+    // furthest the verified point may be from its prediction
+    public int verifyRadius = 3;
+
+    // Running average of the keyframe residuals under which followed points are not verified
+    public double interpolateError = 0;
+
+    // Number of frames between full searches of each point
+    private final int[] stride;
+
+    // Number of frames each point was followed since its last full search
+    private final int[] since;
+
+    // Running average of the keyframe residuals of each point, in pixels
+    private final double[] error;
+
+    // Number of frames each point was found in a row, as the motion model needs two to predict
+    private final int[] found;
+
+    // Half-size in pixels of the blob of each point, as last seen
+    private final int[] extent;
+
+    // Whether each point was taken as predicted in the last frame
+    private final boolean[] guessed;
+
+    // Number of frames each point was followed with and without verification, for the log
+    public long verified;
+    public long interpolated;
+
+    /**
+     * Constructor to create a schedule for a number of points, all fully
+     * searched until their motion is known
+     * 
+     * @param targets   the number of points
+     * @param maxStride the largest number of frames from one full search of a
+     *                  point to the next
+     */
+    public KeyframeSchedule(int targets, int maxStride) {
+        this.maxStride = Math.max(1, maxStride);
+        this.stride = new int[targets];
+        this.since = new int[targets];
+        this.error = new double[targets];
+        this.found = new int[targets];
+        this.extent = new int[targets];
+        this.guessed = new boolean[targets];
+        Arrays.fill(stride, 1);
+        Arrays.fill(extent, verifyRadius);
+        Arrays.fill(error, Double.MAX_VALUE);
+    }
+
+    /**
+     * Function to decide how to track a point in the next frame
+     * 
+     * @param target the index of the point
+     * @return FULL to search for it, VERIFY to check its prediction in a small
+     *         window, or INTERPOLATE to take its prediction as it is
+     */
+    public int mode(int target) {
+        if (found[target] < 2 || since[target] + 1 >= stride[target]) {
+            return FULL;
+        }
+        // Never twice in a row, so a change of motion goes unseen for one frame at most
+        return error[target] <= interpolateError && !guessed[target] ? INTERPOLATE : VERIFY;
+    }
+
+    /**
+     * Function to get the half-size of the window a point is verified in
+     * 
+     * @param target the index of the point
+     * @return the half-size in pixels
+     */
+    public int window(int target) {
+        return extent[target] + verifyRadius;
+    }
+
+    /**
+     * Function to record a full search of a point and adapt its stride to how
+     * far the prediction was from it
+     * 
+     * @param target the index of the point
+     * @param pred   the prediction the search started from
+     * @param coords the coordinates found, or null if the point was lost
+     * @param blob   the blob the point was taken from, or null if not known
+     */
+    public void searched(int target, int[] pred, int[] coords, Blob blob) {
+        since[target] = 0;
+        guessed[target] = false;
+        measure(target, blob);
+        if (coords == null) {
+            stride[target] = 1;
+            error[target] = Double.MAX_VALUE;
+            found[target] = 0;
+            return;
+        }
+        found[target] += 1;
+        if (found[target] < 3) {
+            // The first two predictions are made without knowing the motion
+            return;
+        }
+        double dx = coords[0] - pred[0];
+        double dy = coords[1] - pred[1];
+        double residual = Math.sqrt(dx * dx + dy * dy);
+        error[target] = error[target] == Double.MAX_VALUE ? residual : (error[target] + residual) / 2;
+        if (residual <= tolerance) {
+            stride[target] = Math.min(maxStride, stride[target] + 1);
+        } else {
+            stride[target] = Math.max(1, stride[target] / 2);
+            error[target] = Math.max(error[target], residual);
+        }
+    }
+
+    /**
+     * Function to record a frame in which a point was followed instead of
+     * searched
+     * 
+     * @param target the index of the point
+     * @param mode   VERIFY or INTERPOLATE, whichever was used
+     * @param blob   the blob the point was verified with, or null
+     */
+    public void followed(int target, int mode, Blob blob) {
+        since[target] += 1;
+        guessed[target] = mode == INTERPOLATE;
+        measure(target, blob);
+        found[target] += 1;
+        if (mode == VERIFY) {
+            verified += 1;
+        } else {
+            interpolated += 1;
+        }
+    }
+
+    /**
+     * Function to record that the verification window did not hold the point,
+     * so it is searched fully in this frame and every frame until its motion is
+     * predictable again
+     * 
+     * @param target the index of the point
+     * @param blob   the blob nearest the prediction in the window, or null
+     */
+    public void missed(int target, Blob blob) {
+        stride[target] = 1;
+        error[target] = Double.MAX_VALUE;
+        guessed[target] = false;
+        if (blob != null) {
+            // The blob may have been cut off by the window, so the next window is larger
+            extent[target] = Math.max(extent[target] + verifyRadius, halfSize(blob));
+        }
+    }
+
+    /**
+     * Utility function to keep the size of the blob a point was seen as
+     */
+    private void measure(int target, Blob blob) {
+        if (blob != null) {
+            extent[target] = halfSize(blob);
+        }
+    }
+
+    /**
+     * Utility function to get the half-size of a blob, rounded up
+     */
+    private static int halfSize(Blob blob) {
+        return (Math.max(blob.maxX - blob.minX, blob.maxY - blob.minY) + 1) / 2 + 1;
+    }
+}
@@ -0,0 +1,65 @@
+package com.projects.pointtracker;
+
+/**
+ * Constant velocity extrapolation from the last two tracked coordinates. This
+ * predictor reports no uncertainty, so the tracker uses its default search
+ * window.
+ */
+public class LinearPredictor implements MotionPredictor {
+
+    // Coordinates of the point in the last frame
+    private int[] last;
+
+    // Coordinates of the point in the last to last frame
+    private int[] beforeLast;
+
+    @Override
+    public void reset() {
+        last = null;
+        beforeLast = null;
+    }
+
+    @Override
+    public void update(int[] coords) {
+        beforeLast = last;
+        last = coords;
+    }
+
+    @Override
+    public int[] predict() {
+        if (beforeLast == null) {
+            return new int[] { 0, 0 };
+        }
+        return new int[] { 2 * last[0] - beforeLast[0], 2 * last[1] - beforeLast[1] };
+    }
+
+    @Override
+    public double[] uncertainty() {
+        return null;
+    }
+
+    @Override
+    public MotionPredictor fresh() {
+        return new LinearPredictor();
+    }
+
+    @Override
+    public double[] save() {
+        if (last == null) {
+            return new double[0];
+        }
+        if (beforeLast == null) {
+            return new double[] { last[0], last[1] };
+        }
+        return new double[] { last[0], last[1], beforeLast[0], beforeLast[1] };
+    }
+
+    @Override
+    public void restore(double[] state) {
+        if (state.length != 0 && state.length != 2 && state.length != 4) {
+            throw new IllegalArgumentException("Expected 0, 2 or 4 numbers, got " + state.length);
+        }
+        last = state.length >= 2 ? new int[] { (int) state[0], (int) state[1] } : null;
+        beforeLast = state.length == 4 ? new int[] { (int) state[2], (int) state[3] } : null;
+    }
+}
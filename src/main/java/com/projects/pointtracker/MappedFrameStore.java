@@ -0,0 +1,257 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Store of the decoded frames of a video in a single raw bgr24 file, so any
+ * frame can be read instantly by its number and repeated runs skip decoding.
+ * The file is memory-mapped a window of frames at a time, so clips larger than
+ * the heap or the address space only cost one window per reader.
+ */
+public class MappedFrameStore implements AutoCloseable {
+
+    // Default size of a mapped window in bytes
+    public static final long WINDOW = 256L << 20;
+
+    // The raw file holding the frames back to back
+    private final File file;
+
+    // Channel the windows are mapped from
+    private final FileChannel channel;
+
+    // The width and height of the stored frames
+    private final int width;
+    private final int height;
+
+    // Size of a frame in bytes, which is also the stride between frames
+    private final long frameBytes;
+
+    // Number of frames in the store
+    private final int frameCount;
+
+    // Number of frames mapped at a time by a reader
+    private final int windowFrames;
+
+    // Reader used for seeking
+    private final Window seeker;
+
+    // Readers of the open sources, whose windows are dropped when the store is deleted
+    private final List<Window> windows = new ArrayList<>();
+
+    /**
+     * Constructor to open an existing store
+     * 
+     * @param path   the path of the raw file
+     * @param width  the width of the frames
+     * @param height the height of the frames
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedFrameStore(String path, int width, int height) throws IOException {
+        this.file = new File(path);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.width = width;
+        this.height = height;
+        this.frameBytes = (long) width * height * 3;
+        this.frameCount = (int) (channel.size() / frameBytes);
+        this.windowFrames = (int) Math.max(1, Math.min(WINDOW / frameBytes, Integer.MAX_VALUE / frameBytes));
+        this.seeker = new Window();
+    }
+
+    /**
+     * Function to decode a video once into a new store. The raw file grows as
+     * ffmpeg decodes, and ffmpeg stops once it reaches maxBytes, so the size of
+     * videos without a known frame count is bounded too.
+     * 
+     * @param inputPath the path of the input video
+     * @param path      the path of the raw file to write
+     * @param width     the width of the video frames
+     * @param height    the height of the video frames
+     * @param maxBytes  the largest size of the raw file
+     * @return the opened store, or null if the video does not fit in maxBytes
+     * @throws IOException if ffmpeg fails or the file cannot be opened
+     */
+    public static MappedFrameStore create(String inputPath, String path, int width, int height, long maxBytes)
+            throws IOException {
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        Process process = new ProcessBuilder(
+                "ffmpeg",
+                "-y",
+                "-v", "error",
+                "-i", inputPath,
+                "-f", "rawvideo",
+                "-pix_fmt", "bgr24",
+                "-fs", String.valueOf(maxBytes),
+                path).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try {
+            if (process.waitFor() != 0) {
+                file.delete();
+                throw new IOException("ffmpeg exited with " + process.exitValue());
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            file.delete();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding " + inputPath, e);
+        }
+        if (file.length() > maxBytes - (long) width * height * 3) {
+            // ffmpeg stopped at the limit, so the store would miss the end of the video
+            file.delete();
+            return null;
+        }
+        return new MappedFrameStore(path, width, height);
+    }
+
+    /**
+     * Getter function for the number of frames in the store
+     * 
+     * @return the number of frames
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Function to read any frame of the store into a frame buffer
+     * 
+     * @param index the 0-based frame number
+     * @param frame the TYPE_3BYTE_BGR buffer to fill
+     * @return false if there is no such frame
+     */
+    public synchronized boolean read(int index, BufferedImage frame) throws IOException {
+        return seeker.read(index, frame);
+    }
+
+    /**
+     * Function to create a source that reads the frames of the store in order.
+     * Closing the source leaves the store open.
+     * 
+     * @return a frame source positioned at the first frame
+     */
+    public FrameSource source() {
+        return source(0, -1);
+    }
+
+    /**
+     * Function to create a source that reads a range of frames of the store in
+     * order. Every source maps its own windows, so sources can be read on
+     * different threads.
+     * 
+     * @param first the 0-based number of the first frame
+     * @param count the number of frames to read, or -1 to read to the end
+     * @return a frame source positioned at the first frame of the range
+     */
+    public FrameSource source(int first, int count) {
+        Window window = new Window();
+        synchronized (windows) {
+            windows.add(window);
+        }
+        int end = count < 0 ? frameCount : (int) Math.min(frameCount, (long) first + count);
+        return new FrameSource() {
+            int next = first;
+
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public boolean read(BufferedImage frame) throws IOException {
+                return next < end && window.read(next++, frame);
+            }
+
+            @Override
+            public void close() {
+                synchronized (windows) {
+                    windows.remove(window);
+                }
+                window.buffer = null;
+            }
+        };
+    }
+
+    /**
+     * Function to close the store. Mapped windows are released once their
+     * readers are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Function to close the store and delete its file. The mapped windows are
+     * dropped first, as some systems refuse to delete a file that is still mapped.
+     * A file that cannot be deleted yet is deleted when the JVM exits.
+     * 
+     * @return true if the file was deleted
+     */
+    public boolean delete() {
+        try {
+            close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            seeker.buffer = null;
+        }
+        synchronized (windows) {
+            for (Window window : windows) {
+                window.buffer = null;
+            }
+            windows.clear();
+        }
+        if (file.delete() || !file.exists()) {
+            return true;
+        }
+        System.err.println("Could not delete frame store " + file + ", deleting it on exit");
+        file.deleteOnExit();
+        return false;
+    }
+
+    /**
+     * Window of consecutive frames mapped for one reader
+     */
+    private class Window {
+
+        // Mapped bytes of the window, or null before the first read
+        private MappedByteBuffer buffer;
+
+        // Frame number of the first frame in the window
+        private int first;
+
+        /**
+         * Function to copy a frame out of the window, mapping the window that holds
+         * it first if needed. bgr24 has the same byte layout as TYPE_3BYTE_BGR so
+         * the frame is a single bulk copy from the page cache.
+         */
+        boolean read(int index, BufferedImage frame) throws IOException {
+            if (index < 0 || index >= frameCount) {
+                return false;
+            }
+            if (buffer == null || index < first || index >= first + windowFrames) {
+                first = index - index % windowFrames;
+                long length = Math.min(windowFrames, frameCount - first) * frameBytes;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, first * frameBytes, length);
+            }
+            byte[] data = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+            buffer.get((int) ((index - first) * frameBytes), data, 0, (int) frameBytes);
+            return true;
+        }
+    }
+}
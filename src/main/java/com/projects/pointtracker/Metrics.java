@@ -0,0 +1,50 @@
+package com.projects.pointtracker;
+
+/**
+ * Receiver of the per-frame performance figures of a tracking run. The pipeline
+ * only reads the clock when metrics are enabled, so the NOOP default costs
+ * nothing.
+ */
+public interface Metrics {
+
+    // Metrics that are switched off
+    Metrics NOOP = new Metrics() {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void frame(int index, long decodeNanos, long searchNanos, long annotateNanos, long encodeNanos,
+                int iterations, long pixels) {
+        }
+
+        @Override
+        public void finish() {
+        }
+    };
+
+    /**
+     * Function to mark the start of a run, before the first frame is decoded
+     */
+    void start();
+
+    /**
+     * Function to record a frame once it has been written. Called from a single
+     * thread in frame order.
+     * 
+     * @param index         the 0-based position of the frame in the video
+     * @param decodeNanos   the time spent reading the frame from the source
+     * @param searchNanos   the time spent locating all targets in the frame
+     * @param annotateNanos the time spent drawing the overlays
+     * @param encodeNanos   the time spent writing the frame to the sink
+     * @param iterations    the number of findPoint iterations over all targets
+     * @param pixels        the number of pixels scanned over all targets
+     */
+    void frame(int index, long decodeNanos, long searchNanos, long annotateNanos, long encodeNanos, int iterations,
+            long pixels);
+
+    /**
+     * Function to mark the end of a run, after the last frame is written
+     */
+    void finish();
+}
@@ -0,0 +1,195 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+
+/**
+ * Block-level motion mask over fixed camera footage. Every tile of the frame
+ * keeps a running background of the luma of every other pixel of every other
+ * row, and a tile counts as changed when any of them moves further than the
+ * threshold from its background. The first frame is the background of every
+ * tile; after that, tiles are only compared once a search asks for them, at a
+ * quarter of the cost of scanning them, so the mask costs nothing outside the
+ * search windows. The tiles
+ * around the prediction are always searched, since a point that stops moving
+ * fades into the background.
+ */
+public class MotionMask {
+
+    // Side of a tile in pixels
+    public static final int TILE = 16;
+
+    // Distance between the sampled pixels and rows of a tile
+    private static final int STEP = 2;
+
+    // Number of samples per side and per tile
+    private static final int SIDE = TILE / STEP;
+    private static final int SAMPLES = SIDE * SIDE;
+
+    // Largest change of a sampled luma, out of 255, that still counts as background
+    public int threshold = 24;
+
+    // Half-size in pixels of the box around the prediction that is searched whether it changed or not
+    public int keepRadius = 2 * TILE;
+
+    // Number of pixels read to compare tiles in the current frame
+    public long pixelsRead;
+
+    // The size of the frames and the number of tiles along each axis
+    private int width;
+    private int height;
+    private int tilesX;
+
+    // Background luma of every sample of every tile
+    private byte[] background;
+
+    // Frame number a tile was last compared in
+    private int[] stamp;
+
+    // Whether a tile changed in the frame of its stamp
+    private boolean[] changed;
+
+    // Frame number of the current frame, starting at 1
+    private int frame = 0;
+
+    // The frame being searched
+    private BufferedImage image;
+
+    // Backing bytes of a TYPE_3BYTE_BGR frame with the index of its pixel (0, 0) and its stride, or null
+    private byte[] data;
+    private int base;
+    private int stride;
+
+    // Box searched whatever the mask says, as {lowerX, upperX, lowerY, upperY}
+    private final int[] keep = new int[4];
+
+
+    /**
+     * Function to move the mask on to the next frame. The first frame, or the
+     * first after the frame size changed, becomes the background of every tile,
+     * so tiles first searched much later are still compared with it.
+     * 
+     * @param image the frame to search next
+     */
+    public void next(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height || background == null) {
+            width = image.getWidth();
+            height = image.getHeight();
+            tilesX = (width + TILE - 1) / TILE;
+            int tiles = tilesX * ((height + TILE - 1) / TILE);
+            background = new byte[tiles * SAMPLES];
+            stamp = new int[tiles];
+            changed = new boolean[tiles];
+            frame = 0;
+        }
+        this.image = image;
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        data = null;
+        if (buffer instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel
+                && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            data = ((DataBufferByte) buffer).getData();
+            stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+            base = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX() * 3;
+        }
+        frame += 1;
+        pixelsRead = 0;
+        keep[0] = keep[1] = keep[2] = keep[3] = 0;
+        if (frame == 1) {
+            for (int tile = 0; tile < stamp.length; tile++) {
+                changed[tile] = compare(tile, (tile % tilesX) * TILE, (tile / tilesX) * TILE, true);
+                stamp[tile] = frame;
+            }
+        }
+    }
+
+    /**
+     * Function to set the point around which every tile is searched
+     * 
+     * @param x the x coordinate of the prediction
+     * @param y the y coordinate of the prediction
+     */
+    public void keep(int x, int y) {
+        keep(x, y, keepRadius);
+    }
+
+    /**
+     * Function to set the box in which every tile is searched
+     * 
+     * @param x      the x coordinate of the center of the box
+     * @param y      the y coordinate of the center of the box
+     * @param radius the half-size of the box
+     */
+    public void keep(int x, int y, int radius) {
+        keep[0] = x - radius;
+        keep[1] = x + radius;
+        keep[2] = y - radius;
+        keep[3] = y + radius;
+    }
+
+    /**
+     * Function to check whether a tile may hold the moving point, comparing it
+     * with its background the first time it is asked for in a frame
+     * 
+     * @param tx the column of the tile
+     * @param ty the row of the tile
+     * @return true if the tile changed, is kept or this is the first frame
+     */
+    public boolean changed(int tx, int ty) {
+        int x = tx * TILE;
+        int y = ty * TILE;
+        if (x < keep[1] && x + TILE > keep[0] && y < keep[3] && y + TILE > keep[2]) {
+            return true;
+        }
+        int tile = ty * tilesX + tx;
+        if (stamp[tile] != frame) {
+            changed[tile] = compare(tile, x, y, false);
+            stamp[tile] = frame;
+        }
+        return changed[tile];
+    }
+
+    /**
+     * Utility function to compare the samples of a tile with its background and
+     * blend them into it
+     * 
+     * @param tile    the index of the tile
+     * @param x       the x coordinate of the tile
+     * @param y       the y coordinate of the tile
+     * @param initial true if the tile has no background yet
+     * @return true if any sample moved further than the threshold
+     */
+    private boolean compare(int tile, int x, int y, boolean initial) {
+        boolean moved = initial;
+        int upperX = Math.min(width, x + TILE);
+        int offset = tile * SAMPLES;
+        for (int k = 0, sy = y; k < SIDE && sy < height; k++, sy += STEP) {
+            for (int j = 0, sx = x; sx < upperX; j++, sx += STEP) {
+                int luma;
+                if (data != null) {
+                    int p = base + sy * stride + sx * 3;
+                    luma = ((data[p + 2] & 0xff) * 77 + (data[p + 1] & 0xff) * 150 + (data[p] & 0xff) * 29) >> 8;
+                } else {
+                    int color = image.getRGB(sx, sy);
+                    luma = (((color >> 16) & 0xff) * 77 + ((color >> 8) & 0xff) * 150 + (color & 0xff) * 29) >> 8;
+                }
+                pixelsRead += 1;
+                int i = offset + k * SIDE + j;
+                if (initial) {
+                    background[i] = (byte) luma;
+                    continue;
+                }
+                int previous = background[i] & 0xff;
+                if (Math.abs(luma - previous) > threshold) {
+                    moved = true;
+                }
+                background[i] = (byte) ((previous * 3 + luma) >> 2);
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,88 @@
+package com.projects.pointtracker;
+
+/**
+ * Motion model that predicts where the point will be in the next frame
+ */
+public interface MotionPredictor {
+
+    /**
+     * Function to create a model with default settings from its name, e.g. a
+     * command line option
+     * 
+     * @param name linear for LinearPredictor or kalman for KalmanPredictor
+     * @return a new model
+     * @throws IllegalArgumentException if no model has that name
+     */
+    static MotionPredictor named(String name) {
+        switch (name.toLowerCase()) {
+            case "linear":
+                return new LinearPredictor();
+            case "kalman":
+                return new KalmanPredictor();
+            default:
+                throw new IllegalArgumentException("Unknown motion model: " + name);
+        }
+    }
+
+    /**
+     * Function to forget all observed motion, e.g. at the start of a new run
+     */
+    void reset();
+
+    /**
+     * Function to feed the tracked coordinates of the latest frame to the model
+     * 
+     * @param coords the coordinates of the point in the latest frame
+     */
+    void update(int[] coords);
+
+    /**
+     * Function to predict the coordinates of the point in the next frame
+     * 
+     * @return the predicted coordinates, or {0, 0} if nothing has been observed
+     */
+    int[] predict();
+
+    /**
+     * Function to get the standard deviation of the prediction along each axis,
+     * which describes an axis-aligned uncertainty ellipse around it
+     * 
+     * @return {sigmaX, sigmaY} in pixels, or null if the model cannot estimate it
+     */
+    double[] uncertainty();
+
+    /**
+     * Function to create a model with the same settings and nothing observed, e.g.
+     * to track another part of the video at the same time
+     * 
+     * @return a new model
+     */
+    MotionPredictor fresh();
+
+    /**
+     * Function to capture what the model has observed, e.g. to checkpoint a
+     * long run
+     * 
+     * @return the numbers restore needs to predict as this model would
+     */
+    double[] save();
+
+    /**
+     * Function to continue from a state captured by save on a model with the
+     * same settings
+     * 
+     * @param state the numbers returned by save
+     * @throws IllegalArgumentException if the state does not fit the model
+     */
+    void restore(double[] state);
+
+    /**
+     * Function to describe the model and its settings. Tracks cached with one
+     * description are not reused with another.
+     * 
+     * @return a description that changes whenever the predictions would
+     */
+    default String describe() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,133 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Full-frame scan split into tiles and spread over all cores with fork/join,
+ * used to re-acquire a point once it has been lost
+ */
+public class ParallelScan {
+
+    // Side of a tile in pixels
+    public static final int TILE = 64;
+
+    // Number of tile rows below which a task scans instead of splitting
+    private static final int THRESHOLD = 2;
+
+    /**
+     * Function to scan the whole frame and find the most likely region of the
+     * point, see bestCell
+     * 
+     * @param scanner the scanner matching the target color
+     * @param image   the image to scan
+     * @param predX   the predicted X coordinate
+     * @param predY   the predicted Y coordinate
+     * @return {x, y, radius} of the centroid of the best tile and its neighbors,
+     *         or null if no pixel in the frame matches
+     */
+    public static int[] acquire(PixelScanner scanner, BufferedImage image, int predX, int predY) {
+        int tilesX = (image.getWidth() + TILE - 1) / TILE;
+        int tilesY = (image.getHeight() + TILE - 1) / TILE;
+        long[][] sums = new long[tilesX * tilesY][3];
+        ForkJoinPool.commonPool().invoke(new TileRows(scanner, image, tilesX, sums, 0, tilesY));
+
+        long[] best = bestCell(sums, tilesX, TILE, predX, predY);
+        if (best == null) {
+            return null;
+        }
+        return new int[] { (int) (best[0] / best[2]), (int) (best[1] / best[2]), TILE };
+    }
+
+    /**
+     * Utility function to pick the region of the point from the matches counted
+     * in a grid of cells. Every cell is merged with its 8 neighbors, so a dot
+     * straddling a cell edge counts whole and its centroid is not cut off. The
+     * merged count is divided by 1 plus the distance from the cell center to the
+     * prediction in cells, so a nearby dot can outweigh a larger patch of the same
+     * color far away.
+     * 
+     * @param sums  the {sumX, sumY, count} of every cell, row-major
+     * @param cols  the number of cells in a row
+     * @param size  the side of a cell, in the coordinates of the prediction
+     * @param predX the predicted X coordinate
+     * @param predY the predicted Y coordinate
+     * @return the {sumX, sumY, count} of the best cell merged with its neighbors,
+     *         or null if no cell holds a match
+     */
+    static long[] bestCell(long[][] sums, int cols, int size, double predX, double predY) {
+        int rows = sums.length / cols;
+        long[] merged = new long[3];
+        long[] best = null;
+        double bestScore = 0;
+        for (int cell = 0; cell < sums.length; cell++) {
+            if (sums[cell][2] == 0) {
+                continue;
+            }
+            int cx = cell % cols;
+            int cy = cell / cols;
+            merged[0] = merged[1] = merged[2] = 0;
+            for (int y = Math.max(0, cy - 1); y <= Math.min(rows - 1, cy + 1); y++) {
+                for (int x = Math.max(0, cx - 1); x <= Math.min(cols - 1, cx + 1); x++) {
+                    long[] s = sums[y * cols + x];
+                    merged[0] += s[0];
+                    merged[1] += s[1];
+                    merged[2] += s[2];
+                }
+            }
+            double dx = (cx + 0.5) * size - predX;
+            double dy = (cy + 0.5) * size - predY;
+            double score = merged[2] / (1 + Math.sqrt(dx * dx + dy * dy) / size);
+            if (score > bestScore) {
+                bestScore = score;
+                best = merged.clone();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Task scanning a band of tile rows, splitting it in half until it is small
+     * enough. Every task writes only the sums of its own tiles.
+     */
+    private static class TileRows extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PixelScanner scanner;
+        private final BufferedImage image;
+        private final int tilesX;
+        private final long[][] sums;
+        private final int from;
+        private final int to;
+
+        TileRows(PixelScanner scanner, BufferedImage image, int tilesX, long[][] sums, int from, int to) {
+            this.scanner = scanner;
+            this.image = image;
+            this.tilesX = tilesX;
+            this.sums = sums;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileRows(scanner, image, tilesX, sums, from, mid),
+                        new TileRows(scanner, image, tilesX, sums, mid, to));
+                return;
+            }
+            for (int ty = from; ty < to; ty++) {
+                int lowerY = ty * TILE;
+                int upperY = Math.min(lowerY + TILE, image.getHeight());
+                for (int tx = 0; tx < tilesX; tx++) {
+                    int lowerX = tx * TILE;
+                    int upperX = Math.min(lowerX + TILE, image.getWidth());
+                    scanner.scan(image, lowerX, upperX, lowerY, upperY, sums[ty * tilesX + tx]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.projects.pointtracker;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Per-frame deviation of the tracked points from a reference path. Every
+ * tracked point is projected onto the nearest segment of the path, and the
+ * rows are kept in one flat array so a long video costs a few doubles per
+ * frame and target. The rows can be exported as CSV.
+ */
+public class PathAnalytics {
+
+    // Names of the columns of a row
+    public static final String[] COLUMNS = { "frame", "target", "x", "y", "deviation_px", "deviation_tw", "along_tw",
+            "path_heading_deg", "heading_deg", "heading_error_deg", "cumulative_tw_s" };
+
+    // Indices of the columns of a row
+    public static final int FRAME = 0;
+    public static final int TARGET = 1;
+    public static final int X = 2;
+    public static final int Y = 3;
+    public static final int DEVIATION_PX = 4;
+    public static final int DEVIATION_TW = 5;
+    public static final int ALONG_TW = 6;
+    public static final int PATH_HEADING = 7;
+    public static final int HEADING = 8;
+    public static final int HEADING_ERROR = 9;
+    public static final int CUMULATIVE = 10;
+
+    // Path the points are meant to follow
+    public final ReferencePath path;
+
+    // Number of pixels per track width
+    private final double pixelsPerTw;
+
+    // Duration of a frame in seconds
+    private final double frameTime;
+
+    // Running sum of the deviation of each target over time, in track widths times seconds
+    private final double[] cumulative;
+
+    // Projection of the point being measured, filled by ReferencePath.project
+    private final double[] projection = new double[5];
+
+    // Rows of every measured point, COLUMNS.length values each
+    private double[] rows = new double[COLUMNS.length * 256];
+
+    // Number of rows measured
+    private int count;
+
+    /**
+     * Constructor to create the analytics of a run over the path of a tracker
+     * 
+     * @param tracker the tracker holding the path, the fps and the track width
+     * @param targets the number of targets tracked
+     */
+    public PathAnalytics(Tracker tracker, int targets) {
+        this.path = tracker.path;
+        this.pixelsPerTw = tracker.ratio * tracker.trackWidth;
+        this.frameTime = tracker.fps > 0 ? 1.0 / tracker.fps : 0;
+        this.cumulative = new double[targets];
+    }
+
+    /**
+     * Function to measure a tracked point against the path and record the row.
+     * The deviation is signed, positive right of the direction of the path as
+     * seen on screen.
+     * 
+     * @param index  the 0-based position of the frame in the video
+     * @param target the index of the target
+     * @param prev   the coordinates of the target in the previous frame, or null
+     * @param coords the coordinates of the target in this frame, or null if lost
+     * @param row    receives the row, COLUMNS.length values long
+     * @return true if the row was filled, false if the point was lost
+     */
+    public boolean measure(int index, int target, int[] prev, int[] coords, double[] row) {
+        if (coords == null) {
+            return false;
+        }
+        path.project(coords[0], coords[1], projection);
+        double deviation = projection[0] / pixelsPerTw;
+        cumulative[target] += deviation * frameTime;
+
+        double pathHeading = Math.toDegrees(projection[3]);
+        double heading = Double.NaN;
+        double headingError = Double.NaN;
+        if (prev != null && (prev[0] != coords[0] || prev[1] != coords[1])) {
+            heading = Math.toDegrees(Math.atan2(coords[1] - prev[1], coords[0] - prev[0]));
+            headingError = heading - pathHeading;
+            headingError -= 360 * Math.floor((headingError + 180) / 360);
+        }
+
+        row[FRAME] = index;
+        row[TARGET] = target;
+        row[X] = coords[0];
+        row[Y] = coords[1];
+        row[DEVIATION_PX] = projection[0];
+        row[DEVIATION_TW] = projection[1] * deviation;
+        row[ALONG_TW] = projection[2] / pixelsPerTw;
+        row[PATH_HEADING] = pathHeading;
+        row[HEADING] = heading;
+        row[HEADING_ERROR] = headingError;
+        row[CUMULATIVE] = cumulative[target];
+
+        if ((count + 1) * COLUMNS.length > rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        System.arraycopy(row, 0, rows, count * COLUMNS.length, COLUMNS.length);
+        count += 1;
+        return true;
+    }
+
+    /**
+     * Function to get the number of rows measured
+     * 
+     * @return the number of rows
+     */
+    public int getRows() {
+        return count;
+    }
+
+    /**
+     * Function to get the deviation of a target summed over time
+     * 
+     * @param target the index of the target
+     * @return the cumulative deviation in track widths times seconds
+     */
+    public double getCumulative(int target) {
+        return cumulative[target];
+    }
+
+    /**
+     * Function to write one line per measured point as CSV. Headings of points
+     * that did not move are left empty.
+     * 
+     * @param file the path of the CSV file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeCSV(String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println(String.join(",", COLUMNS));
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                int offset = i * COLUMNS.length;
+                line.setLength(0);
+                line.append((long) rows[offset]).append(',').append((long) rows[offset + 1]).append(',')
+                        .append((long) rows[offset + 2]).append(',').append((long) rows[offset + 3]);
+                for (int c = DEVIATION_PX; c < COLUMNS.length; c++) {
+                    line.append(',').append(format(rows[offset + c]));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Utility function to format a number independently of the locale
+     * 
+     * @param value the number to format
+     * @return the number with up to 4 decimals, or an empty string for NaN
+     */
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "";
+        }
+        return String.format(Locale.ROOT, "%.4f", value).replaceAll("\\.?0+$", "");
+    }
+}
@@ -0,0 +1,177 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Scanner that accumulates the pixels matching a color in a window of a frame.
+ * It reads the backing array of the raster row by row and allocates nothing
+ * while scanning.
+ */
+public class PixelScanner {
+
+    // Kernel for raster scans, picked once at startup
+    public static final ScanKernel KERNEL = loadKernel();
+
+    // The color test used for every pixel
+    public final ColorMatcher matcher;
+
+    /**
+     * Constructor to create a scanner for a color
+     * 
+     * @param matcher the color test used for every pixel
+     */
+    public PixelScanner(ColorMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    /**
+     * Function to add the matching pixels of a window to running sums
+     * 
+     * @param image  the image to scan
+     * @param lowerX lower x bound (inclusive)
+     * @param upperX upper x bound (exclusive)
+     * @param lowerY lower y bound (inclusive)
+     * @param upperY upper y bound (exclusive)
+     * @param sums   running {sumX, sumY, count} of the matching pixels
+     */
+    public void scan(BufferedImage image, int lowerX, int upperX, int lowerY, int upperY, long[] sums) {
+        if (lowerX >= upperX || lowerY >= upperY) {
+            return;
+        }
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        int type = image.getType();
+
+        if (buffer instanceof DataBufferInt && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+            int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            int base = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX();
+            KERNEL.scanInt(matcher, ((DataBufferInt) buffer).getData(), base, stride, lowerX, upperX, lowerY,
+                    upperY, sums);
+        } else if (buffer instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel
+                && type == BufferedImage.TYPE_3BYTE_BGR) {
+            int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+            int base = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+                    - raster.getSampleModelTranslateX() * 3;
+            KERNEL.scanBgr(matcher, ((DataBufferByte) buffer).getData(), base, stride, lowerX, upperX, lowerY,
+                    upperY, sums);
+        } else {
+            scanRGB(image, lowerX, upperX, lowerY, upperY, sums);
+        }
+    }
+
+    /**
+     * Function to add the matching pixels of a row that has already been read with
+     * readRow, so several scanners can share one pass over the pixels
+     * 
+     * @param row    the packed rgb colors of the row
+     * @param offset the x coordinate of row[0]
+     * @param lowerX lower x bound (inclusive)
+     * @param upperX upper x bound (exclusive)
+     * @param y      the y coordinate of the row
+     * @param sums   running {sumX, sumY, count} of the matching pixels
+     */
+    public void scanRow(int[] row, int offset, int lowerX, int upperX, int y, long[] sums) {
+        if (matcher.table != null) {
+            long sumX = 0;
+            long c = 0;
+            for (int x = lowerX; x < upperX; x++) {
+                if (matcher.matches(row[x - offset])) {
+                    sumX += x;
+                    c += 1;
+                }
+            }
+            sums[0] += sumX;
+            sums[1] += c * y;
+            sums[2] += c;
+            return;
+        }
+        int tr = matcher.red;
+        int tg = matcher.green;
+        int tb = matcher.blue;
+        int threshold = matcher.thresholdSq;
+        long sumX = 0;
+        long c = 0;
+        for (int x = lowerX; x < upperX; x++) {
+            int color = row[x - offset];
+            int dr = ((color >> 16) & 0xff) - tr;
+            int dg = ((color >> 8) & 0xff) - tg;
+            int db = (color & 0xff) - tb;
+            if (dr * dr + dg * dg + db * db <= threshold) {
+                sumX += x;
+                c += 1;
+            }
+        }
+        sums[0] += sumX;
+        sums[1] += c * y;
+        sums[2] += c;
+    }
+
+    /**
+     * Utility function to unpack a segment of a row into packed rgb colors
+     * 
+     * @param image  the image to read
+     * @param y      the y coordinate of the row
+     * @param lowerX lower x bound (inclusive)
+     * @param upperX upper x bound (exclusive)
+     * @param row    the array to write the colors of x = lowerX, lowerX + 1, ... into
+     */
+    public static void readRow(BufferedImage image, int y, int lowerX, int upperX, int[] row) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer buffer = raster.getDataBuffer();
+        if (buffer instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel
+                && image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] data = ((DataBufferByte) buffer).getData();
+            int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+            int i = buffer.getOffset() + (y - raster.getSampleModelTranslateY()) * stride
+                    + (lowerX - raster.getSampleModelTranslateX()) * 3;
+            for (int x = 0; x < upperX - lowerX; x++, i += 3) {
+                row[x] = ((data[i + 2] & 0xff) << 16) | ((data[i + 1] & 0xff) << 8) | (data[i] & 0xff);
+            }
+        } else {
+            image.getRGB(lowerX, y, upperX - lowerX, 1, row, 0, upperX - lowerX);
+        }
+    }
+
+    /**
+     * Fallback scan for any other image type using getRGB
+     */
+    private void scanRGB(BufferedImage image, int lowerX, int upperX, int lowerY, int upperY, long[] sums) {
+        for (int y = lowerY; y < upperY; y++) {
+            for (int x = lowerX; x < upperX; x++) {
+                if (matcher.matches(image.getRGB(x, y))) {
+                    sums[0] += x;
+                    sums[1] += y;
+                    sums[2] += 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Utility function to pick the scan kernel. The Vector API kernel is used when
+     * the jdk.incubator.vector module has been added to the runtime (e.g. with
+     * --add-modules jdk.incubator.vector), unless the pointtracker.kernel system
+     * property is set to scalar.
+     * 
+     * @return the fastest kernel available
+     */
+    private static ScanKernel loadKernel() {
+        if (!"scalar".equals(System.getProperty("pointtracker.kernel"))) {
+            try {
+                return (ScanKernel) Class.forName("com.projects.pointtracker.VectorKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Vector API not available in this runtime
+            }
+        }
+        return new ScalarKernel();
+    }
+}
@@ -1,23 +1,37 @@
 package com.projects.pointtracker;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Pos;
 import javafx.scene.Cursor;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Slider;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 
+import java.awt.Graphics;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.File;
-
-import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Application UI class for point tracker
@@ -30,9 +44,30 @@ public class PointTracker extends Application {
   // Status label to warn/update status of program
   private Label warningLabel = new Label("");
 
+  // Progress of the video being processed
+  private ProgressBar progressBar = new ProgressBar(0);
+
+  // Slider to seek through the frames once they are decoded into the frame store
+  private Slider seekSlider = new Slider(0, 0, 0);
+
+  // Button that starts processing, and cancels it while a video is processed
+  private Button processButton;
+
+  // Video being processed in the background, or null when idle
+  private ProcessTask processTask;
+
+  // Target being built in the background, or null when none is
+  private Task<Target> targetTask;
+
+  // Thread running the last task, which may still be winding down after a cancel
+  private Thread processThread;
+
   // Backend tracker object
   private Tracker tracker;
 
+  // First frame of the loaded video, used to pick the target color
+  private BufferedImage previewImage;
+
   // Boolean to check whether program is in setTarget mode
   private boolean setTarget = false;
 
@@ -45,6 +80,25 @@ public class PointTracker extends Application {
   // Variable to store scaling points
   private int[][] points = new int[2][2];
 
+  // Color space the next picked target is matched in
+  private ColorMetric colorMetric = ColorMetric.RGB;
+
+  // Motion model the next picked target is predicted with
+  private MotionPredictor predictor = new LinearPredictor();
+
+  // Boolean to check whether program is in setRoi mode
+  private boolean setRoi = false;
+
+  // First corner of the region of interest in video pixels, or null before the first click
+  private int[] roiCorner;
+
+  // Boolean to check whether program is in setPath mode
+  private boolean setPath = false;
+
+  // Vertices of the reference path clicked so far in video pixels
+  private double[] pathX = new double[0];
+  private double[] pathY = new double[0];
+
   /**
    * Runner function for JavaFX
    * 
@@ -68,7 +122,7 @@ public class PointTracker extends Application {
     loadButton.setOnAction(e -> loadImage(primaryStage));
     loadButton.getStyleClass().add("button");
 
-    Button processButton = new Button("Process");
+    processButton = new Button("Process");
     processButton.setOnAction(e -> processImage(primaryStage));
     processButton.getStyleClass().add("button");
 
@@ -85,6 +139,31 @@ public class PointTracker extends Application {
     StackPane b3 = new StackPane(setScaleButton);
     StackPane b4 = new StackPane(setTargetButton);
 
+    Button setRoiButton = new Button("ROI");
+    setRoiButton.setOnAction(e -> setRoi());
+    setRoiButton.getStyleClass().add("button");
+
+    Button colorMetricButton = new Button(colorMetric.name());
+    colorMetricButton.setOnAction(e -> nextColorMetric(colorMetricButton));
+    colorMetricButton.getStyleClass().add("button");
+
+    Button setPathButton = new Button("Path");
+    setPathButton.setOnAction(e -> setPath());
+    setPathButton.getStyleClass().add("button");
+
+    Button predictorButton = new Button(predictorName());
+    predictorButton.setOnAction(e -> nextPredictor(predictorButton));
+    predictorButton.getStyleClass().add("button");
+
+    StackPane b5 = new StackPane(setRoiButton);
+    StackPane b6 = new StackPane(colorMetricButton);
+    StackPane b7 = new StackPane(setPathButton);
+    StackPane b8 = new StackPane(predictorButton);
+    b5.getStyleClass().add("button-container");
+    b6.getStyleClass().add("button-container");
+    b7.getStyleClass().add("button-container");
+    b8.getStyleClass().add("button-container");
+
     b1.getStyleClass().add("button-container");
     b2.getStyleClass().add("button-container");
     b3.getStyleClass().add("button-container");
@@ -92,21 +171,33 @@ public class PointTracker extends Application {
 
     HBox row1 = new HBox(b1, b2);
     HBox row2 = new HBox(b3, b4);
+    HBox row3 = new HBox(b5, b6);
+    HBox row4 = new HBox(b7, b8);
 
     warningLabel.getStyleClass().add("warning-text");
 
     HBox bottomLeftBox = new HBox();
     bottomLeftBox.setAlignment(Pos.BOTTOM_LEFT);
-    bottomLeftBox.getChildren().add(warningLabel);
+    progressBar.setVisible(false);
+    bottomLeftBox.getChildren().addAll(warningLabel, progressBar);
     bottomLeftBox.getStyleClass().add("warning-container");
     VBox.setVgrow(bottomLeftBox, Priority.SOMETIMES);
 
     VBox buttons = new VBox();
-    buttons.getChildren().addAll(row1, row2);
+    buttons.getChildren().addAll(row1, row2, row3, row4);
     buttons.getStyleClass().add("vbox");
 
+    seekSlider.setDisable(true);
+    seekSlider.setBlockIncrement(1);
+    seekSlider.valueProperty().addListener((o, previous, value) -> seek(value.intValue()));
+    seekSlider.valueChangingProperty().addListener((o, previous, changing) -> {
+      if (!changing) {
+        seek((int) seekSlider.getValue());
+      }
+    });
+
     VBox ui = new VBox();
-    ui.getChildren().addAll(imagePane, bottomLeftBox);
+    ui.getChildren().addAll(imagePane, seekSlider, bottomLeftBox);
 
     HBox root = new HBox();
     root.getChildren().addAll(ui, buttons);
@@ -126,28 +217,31 @@ public class PointTracker extends Application {
    * @param e mouse event to get clicked coordinates
    */
   private void imageViewHandler(MouseEvent e) {
+    if (processTask != null) {
+      return;
+    }
     if (setTarget) {
       if (tracker == null) {
         warningLabel.setText("Warning: Image not loaded!");
         return;
       }
+      if (targetTask != null) {
+        warningLabel.setText("Warning: Previous target is still being prepared");
+        return;
+      }
 
       try {
-        BufferedImage image = ImageIO.read(new File(
-            getClass().getResource("/images/frame_0001.png").toExternalForm().substring(6)));
+        BufferedImage image = previewImage;
 
         double Wratio = image.getWidth() / imageView.getFitWidth();
         double Hratio = image.getHeight() / imageView.getFitHeight();
 
         int color = image.getRGB((int) (e.getX() * Wratio), (int) (e.getY() * Hratio));
-        this.tracker.color = color;
 
-        imageView.setCursor(Cursor.DEFAULT);
+        // Shift-click adds another target instead of replacing the current ones
+        buildTarget(color, e.isShiftDown());
 
-        int red = (color & 0x00FF0000) >> 16;
-        int green = (color & 0x0000FF00) >> 8;
-        int blue = (color & 0x000000FF);
-        warningLabel.setText("Tracking: rgb(" + red + ", " + green + ", " + blue + ")");
+        imageView.setCursor(Cursor.DEFAULT);
       } catch (Exception ex) {
         warningLabel.setText("Warning: Error loading image!");
         ex.printStackTrace();
@@ -167,6 +261,40 @@ public class PointTracker extends Application {
         scalePoints = 0;
         imageView.setCursor(Cursor.DEFAULT);
       }
+    } else if (setRoi) {
+      int x = (int) (e.getX() * tracker.width / imageView.getFitWidth());
+      int y = (int) (e.getY() * tracker.height / imageView.getFitHeight());
+      if (roiCorner == null) {
+        roiCorner = new int[] { x, y };
+        warningLabel.setText("Status: Click on the opposite corner of the region");
+        return;
+      }
+      tracker.setRoi(roiCorner[0], roiCorner[1], x, y);
+      roiCorner = null;
+      setRoi = false;
+      imageView.setCursor(Cursor.DEFAULT);
+      warningLabel.setText(tracker.roi == null ? "Status: Tracking in the whole frame"
+          : "Status: Tracking in " + tracker.roi[2] + "x" + tracker.roi[3] + " at (" + tracker.roi[0] + ", "
+              + tracker.roi[1] + ")");
+    } else if (setPath) {
+      // The second click of a double click finishes the path instead of adding a vertex
+      if (e.getClickCount() >= 2) {
+        setPath = false;
+        imageView.setCursor(Cursor.DEFAULT);
+        warningLabel.setText(tracker.path == null ? "Warning: A path needs at least two points"
+            : "Status: Measuring deviation from a path of " + tracker.path.size() + " points");
+        return;
+      }
+      int n = pathX.length;
+      pathX = Arrays.copyOf(pathX, n + 1);
+      pathY = Arrays.copyOf(pathY, n + 1);
+      pathX[n] = e.getX() * tracker.width / imageView.getFitWidth();
+      pathY[n] = e.getY() * tracker.height / imageView.getFitHeight();
+      if (n + 1 >= 2) {
+        tracker.path = new ReferencePath(pathX, pathY);
+        showFrame(previewImage);
+      }
+      warningLabel.setText("Status: Path point " + (n + 1) + ". Double click to finish");
     }
   }
 
@@ -176,20 +304,38 @@ public class PointTracker extends Application {
    * @param stage the main stage to draw the application in
    */
   private void loadImage(Stage stage) {
-    Tracker.flushFrames();
-
+    if (processTask != null) {
+      warningLabel.setText("Warning: Video is being processed");
+      return;
+    }
     FileChooser fileChooser = new FileChooser();
     fileChooser.setTitle("Open Video File");
     File file = fileChooser.showOpenDialog(stage);
 
     if (file != null) {
+      // The frames of the previous video are only dropped once another is picked
+      if (tracker != null) {
+        if (tracker.debugFrames) {
+          tracker.flushFrames();
+        }
+        tracker.closeFrameStore();
+      }
+      seekSlider.setDisable(true);
+      seekSlider.setMax(0);
       tracker = new Tracker(file.toPath().toString());
 
-      if (tracker.deconstruct()) {
-        Image image = new Image(
-            getClass().getResource("/images/frame_0001.png").toExternalForm());
-        imageView.setImage(image);
+      if (tracker.debugFrames && !tracker.deconstruct()) {
+        warningLabel.setText("Warning: Error loading video file");
+        return;
+      }
+
+      previewImage = tracker.firstFrame();
+      if (previewImage != null) {
+        imageView.setImage(toImage(previewImage));
         warningLabel.setText("Status: Video loaded");
+        if (!tracker.debugFrames) {
+          buildFrameStore(tracker);
+        }
       } else {
         warningLabel.setText("Warning: Error loading video file");
       }
@@ -197,27 +343,304 @@ public class PointTracker extends Application {
   }
 
   /**
-   * Function to process each frame of the image and reconstruct it into a video and save it
+   * Function to decode the loaded video into its frame store in the background, enabling the seek slider once
+   * it is ready. Without a store, because it would be too large, the slider seeks with ffmpeg instead.
+   * 
+   * @param owner the tracker of the loaded video
+   */
+  private void buildFrameStore(Tracker owner) {
+    Task<Boolean> task = new Task<Boolean>() {
+      @Override
+      protected Boolean call() {
+        return owner.buildFrameStore();
+      }
+    };
+    task.setOnSucceeded(e -> {
+      if (owner != tracker) {
+        // Another video was loaded in the meantime
+        owner.closeFrameStore();
+      } else if (task.getValue() || (owner.frameStore == null && owner.fps > 0)) {
+        int count = owner.frameStore != null ? owner.frameStore.getFrameCount() : owner.frameCount;
+        if (count > 1) {
+          seekSlider.setMax(count - 1);
+          seekSlider.setValue(0);
+          seekSlider.setDisable(processTask != null);
+        }
+      }
+    });
+    Thread thread = Threads.IO.newThread(task);
+    thread.setName("frame-store");
+    thread.start();
+  }
+
+  /**
+   * Function to build a target in the background, as it classifies every color once for the HSV and LAB metrics,
+   * and add it to the tracker of the loaded video once it is ready
+   * 
+   * @param color the picked target color
+   * @param add   true to track it besides the current targets instead of replacing them
+   */
+  private void buildTarget(int color, boolean add) {
+    Tracker owner = tracker;
+    double tolerance = owner.tolerance;
+    ColorMetric metric = colorMetric;
+    MotionPredictor model = predictor.fresh();
+    MotionPredictor ownerModel = predictor.fresh();
+    Task<Target> task = new Task<Target>() {
+      @Override
+      protected Target call() {
+        return new Target(color, tolerance, metric, model);
+      }
+    };
+    int red = (color & 0x00FF0000) >> 16;
+    int green = (color & 0x0000FF00) >> 8;
+    int blue = (color & 0x000000FF);
+    String rgb = "rgb(" + red + ", " + green + ", " + blue + ")";
+    warningLabel.setText("Status: Preparing target " + rgb);
+    task.setOnSucceeded(e -> {
+      targetTask = null;
+      if (owner != tracker) {
+        // Another video was loaded in the meantime
+        return;
+      }
+      owner.color = color;
+      owner.colorMetric = metric;
+      owner.predictor = ownerModel;
+      if (!add) {
+        owner.targets.clear();
+      }
+      owner.targets.add(task.getValue());
+      warningLabel.setText((add ? "Also tracking" : "Tracking") + ": " + rgb);
+    });
+    task.setOnFailed(e -> {
+      targetTask = null;
+      warningLabel.setText("Warning: Error preparing target");
+      task.getException().printStackTrace();
+    });
+    targetTask = task;
+    Thread thread = Threads.CPU.newThread(task);
+    thread.setName("target");
+    thread.start();
+  }
+
+  /**
+   * Function to show a frame of the loaded video, which is also used to pick the target color
+   * 
+   * @param index the 0-based frame number
+   */
+  private void seek(int index) {
+    if (tracker == null || processTask != null || seekSlider.isDisabled()) {
+      return;
+    }
+    if (tracker.frameStore == null && seekSlider.isValueChanging()) {
+      // Every ffmpeg seek starts a process, so only the frame the slider is dropped on is shown
+      return;
+    }
+    BufferedImage frame = tracker.frameAt(index);
+    if (frame != null) {
+      previewImage = frame;
+      showFrame(frame);
+      warningLabel.setText("Status: Frame " + (index + 1) + " out of " + ((int) seekSlider.getMax() + 1));
+    }
+  }
+
+  /**
+   * Function to show a frame of the loaded video with the reference path drawn over it
+   * 
+   * @param frame the frame to show, which is left as it is
+   */
+  private void showFrame(BufferedImage frame) {
+    if (tracker.path == null) {
+      imageView.setImage(toImage(frame));
+      return;
+    }
+    BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics g = copy.getGraphics();
+    g.drawImage(frame, 0, 0, null);
+    g.dispose();
+    tracker.drawPath(copy, tracker.path);
+    imageView.setImage(toImage(copy));
+  }
+
+  /**
+   * Utility function to convert a decoded frame into a JavaFX image
+   * 
+   * @param frame the frame to convert
+   * @return a JavaFX image with the pixels of the frame
+   */
+  private Image toImage(BufferedImage frame) {
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    int[] pixels = frame.getRGB(0, 0, width, height, null, 0, width);
+
+    WritableImage image = new WritableImage(width, height);
+    image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+    return image;
+  }
+
+  /**
+   * Function to process each frame of the image and reconstruct it into a video and save it. The video is
+   * processed on a background thread while the annotated frames are previewed, and pressing the button again
+   * cancels it.
    * 
    * @param stage the main stage to draw the application in
    */
   private void processImage(Stage stage) {
-    try {
-      DirectoryChooser dc = new DirectoryChooser();
-      File f = dc.showDialog(stage);
-      if (f != null) {
-        warningLabel.setText("Status: Processing image");
-        tracker.trackPoint();
+    if (processTask != null) {
+      processTask.cancel(false);
+      warningLabel.setText("Status: Cancelling");
+      return;
+    }
+    if (tracker == null || previewImage == null) {
+      warningLabel.setText("Warning: Image not loaded!");
+      return;
+    }
+    if (processThread != null && processThread.isAlive()) {
+      warningLabel.setText("Warning: Previous video is still being cancelled");
+      return;
+    }
+    if (targetTask != null) {
+      warningLabel.setText("Warning: Target is still being prepared");
+      return;
+    }
+
+    DirectoryChooser dc = new DirectoryChooser();
+    File f = dc.showDialog(stage);
+    if (f == null) {
+      warningLabel.setText("Status: Directory does not exist");
+      return;
+    }
+
+    processTask = new ProcessTask(f.toPath().toString());
+    imageView.setImage(processTask.preview);
+    progressBar.progressProperty().bind(processTask.progressProperty());
+    progressBar.setVisible(true);
+    seekSlider.setDisable(true);
+    processTask.messageProperty().addListener((o, previous, message) -> warningLabel.setText(message));
+    processButton.setText("Cancel");
+
+    processTask.setOnSucceeded(e -> processFinished(processTask.getValue() ? "Status: Video Reconstructed"
+        : "Warning: Error processing video"));
+    processTask.setOnCancelled(e -> processFinished("Status: Processing cancelled"));
+    processTask.setOnFailed(e -> {
+      Throwable t = processTask.getException();
+      t.printStackTrace();
+      processFinished(t instanceof IllegalStateException ? "Status: Error finding color in frame"
+          : t instanceof IOException ? "Warning: Error starting video encoder" : "Warning: Error processing video");
+    });
+
+    processThread = Threads.CPU.newThread(processTask);
+    processThread.setName("process");
+    processThread.start();
+  }
+
+  /**
+   * Function to reset the UI once the background task has ended
+   * 
+   * @param status the status to show
+   */
+  private void processFinished(String status) {
+    warningLabel.setText(status);
+    progressBar.progressProperty().unbind();
+    progressBar.setVisible(false);
+    processButton.setText("Process");
+    processTask = null;
+    seekSlider.setDisable(seekSlider.getMax() <= 0);
+  }
 
-        warningLabel.setText("Status: Image Processed. Reconstructing video");
-        tracker.reconstruct(f.toPath().toString());
+  /**
+   * Background task that processes the loaded video into a directory. It also watches every annotated frame to
+   * report progress, stop the pipeline once cancelled and show a live preview.
+   */
+  private class ProcessTask extends Task<Boolean> implements FrameSink {
+
+    // Directory to save the output video in
+    private final String directory;
+
+    // Live preview of the annotated frames, drawn straight from pixels
+    private final WritableImage preview;
+
+    // Pixels shared between the preview and the pipeline
+    private final PixelBuffer<IntBuffer> pixels;
+
+    // Frame converted by the pipeline, copied into pixels on the FX thread so the preview never tears
+    private final int[] converted;
+
+    // Whether a frame has been converted that the FX thread has not shown yet
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    // Number of frames written so far
+    private int written = 0;
+
+    /**
+     * Constructor to create a task for the loaded video, called on the FX thread
+     * 
+     * @param directory the directory to save the output video in
+     */
+    ProcessTask(String directory) {
+      this.directory = directory;
+      IntBuffer buffer = ByteBuffer.allocateDirect(tracker.width * tracker.height * 4)
+          .order(ByteOrder.nativeOrder()).asIntBuffer();
+      this.pixels = new PixelBuffer<>(tracker.width, tracker.height, buffer, PixelFormat.getIntArgbPreInstance());
+      this.preview = new WritableImage(pixels);
+      this.converted = new int[tracker.width * tracker.height];
+    }
+
+    @Override
+    protected Boolean call() throws Exception {
+      updateMessage("Status: Processing image");
+      tracker.monitor = this;
+      tracker.cancelled = this::isCancelled;
+      try {
+        return tracker.process(directory);
+      } finally {
+        tracker.monitor = null;
+        tracker.cancelled = null;
+      }
+    }
 
-        warningLabel.setText("Status: Video Reconstructed");
+    /**
+     * Function called by the pipeline with every annotated frame once it is written. The frame is converted
+     * only when the previous one has been shown, so the preview never holds up the pipeline for more than
+     * one conversion per screen update, and is copied into the shared pixels inside updateBuffer.
+     * 
+     * @param frame the annotated frame
+     * @throws InterruptedIOException if the task was cancelled, which stops the pipeline
+     */
+    @Override
+    public void write(BufferedImage frame) throws IOException {
+      if (isCancelled()) {
+        throw new InterruptedIOException("Processing cancelled");
+      }
+      written += 1;
+      updateProgress(written, tracker.frameCount > 0 ? tracker.frameCount : -1);
+      updateMessage("Status: Processing frame " + written
+          + (tracker.frameCount > 0 ? " out of " + tracker.frameCount : ""));
+
+      if (frame.getWidth() != tracker.width || frame.getHeight() != tracker.height
+          || !pending.compareAndSet(false, true)) {
+        return;
+      }
+      int width = tracker.width;
+      if (frame.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+        byte[] data = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
+        for (int p = 0, i = 0; p < converted.length; p++, i += 3) {
+          converted[p] = 0xFF000000 | (data[i + 2] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i] & 0xFF);
+        }
       } else {
-        warningLabel.setText("Status: Directory does not exist");
+        frame.getRGB(0, 0, width, tracker.height, converted, 0, width);
       }
-    } catch (IllegalStateException e) {
-      warningLabel.setText("Status: Error finding color in frame");
+      Platform.runLater(() -> {
+        pixels.updateBuffer(b -> {
+          b.getBuffer().put(0, converted);
+          return null;
+        });
+        pending.set(false);
+      });
+    }
+
+    @Override
+    public void close() {
     }
   }
 
@@ -230,6 +653,79 @@ public class PointTracker extends Application {
     imageView.setCursor(Cursor.CROSSHAIR);
   }
 
+  /**
+   * Function to activate setRoi mode, or to clear the region of interest if it is already set
+   */
+  private void setRoi() {
+    if (tracker == null) {
+      warningLabel.setText("Warning: Image not loaded!");
+      return;
+    }
+    if (tracker.roi != null && !setRoi) {
+      tracker.roi = null;
+      warningLabel.setText("Status: Tracking in the whole frame");
+      return;
+    }
+    setRoi = true;
+    roiCorner = null;
+    warningLabel.setText("Status: Setting region of interest. Click on two opposite corners");
+    imageView.setCursor(Cursor.CROSSHAIR);
+  }
+
+  /**
+   * Function to activate setPath mode, or to clear the reference path if it is already set
+   */
+  private void setPath() {
+    if (tracker == null || previewImage == null) {
+      warningLabel.setText("Warning: Image not loaded!");
+      return;
+    }
+    pathX = new double[0];
+    pathY = new double[0];
+    if (tracker.path != null && !setPath) {
+      tracker.path = null;
+      showFrame(previewImage);
+      warningLabel.setText("Status: Not measuring deviation from a path");
+      return;
+    }
+    tracker.path = null;
+    setPath = true;
+    warningLabel.setText("Status: Setting path. Click along the path and double click to finish");
+    imageView.setCursor(Cursor.CROSSHAIR);
+  }
+
+  /**
+   * Function to switch the color space the next picked target is matched in
+   * 
+   * @param button the button showing the current color metric
+   */
+  private void nextColorMetric(Button button) {
+    ColorMetric[] metrics = ColorMetric.values();
+    colorMetric = metrics[(colorMetric.ordinal() + 1) % metrics.length];
+    button.setText(colorMetric.name());
+    warningLabel.setText("Status: Targets picked next are matched in " + colorMetric.name());
+  }
+
+  /**
+   * Function to switch the motion model the next picked target is predicted with
+   * 
+   * @param button the button showing the current motion model
+   */
+  private void nextPredictor(Button button) {
+    predictor = predictor instanceof KalmanPredictor ? new LinearPredictor() : new KalmanPredictor();
+    button.setText(predictorName());
+    warningLabel.setText("Status: Targets picked next are predicted with " + predictorName());
+  }
+
+  /**
+   * Utility function to get the name of the current motion model shown on its button
+   * 
+   * @return Kalman or Linear
+   */
+  private String predictorName() {
+    return predictor instanceof KalmanPredictor ? "Kalman" : "Linear";
+  }
+
   /**
    * Function to activate setTarget mode
    */
@@ -238,6 +734,16 @@ public class PointTracker extends Application {
     setTarget = true;
   }
 
+  /**
+   * Function to delete the frame store when the application closes
+   */
+  @Override
+  public void stop() {
+    if (tracker != null) {
+      tracker.closeFrameStore();
+    }
+  }
+
   /**
    * Function main
    * 
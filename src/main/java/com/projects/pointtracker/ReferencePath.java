@@ -0,0 +1,275 @@
+package com.projects.pointtracker;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Fixed path the point is meant to follow, as a polyline in video pixels. The
+ * segments are indexed by a packed R-tree: consecutive segments of a path lie
+ * next to each other, so runs of them in path order make tight boxes, and the
+ * boxes are grouped the same way level by level. The nearest segment to a
+ * point is found by descending the tree and skipping every box further than
+ * the best segment so far, which takes a few dozen segment tests however many
+ * vertices the path has and however far the point is from it.
+ */
+public class ReferencePath {
+
+    // Number of segments in a leaf and of children of every other node
+    private static final int FANOUT = 8;
+
+    // Coordinates of the vertices
+    private final double[] xs;
+    private final double[] ys;
+
+    // Length of the path from the first vertex up to each vertex
+    private final double[] along;
+
+    // Rounded vertices for drawing
+    public final int[] drawX;
+    public final int[] drawY;
+
+    // Bounding boxes of the nodes of every level as {minX, maxX, minY, maxY}, from the leaves to the root
+    private final double[][] boxes;
+
+    /**
+     * Constructor to create a path through a list of vertices
+     * 
+     * @param xs the x coordinates of the vertices
+     * @param ys the y coordinates of the vertices
+     * @throws IllegalArgumentException if there are fewer than two vertices
+     */
+    public ReferencePath(double[] xs, double[] ys) {
+        if (xs.length < 2 || xs.length != ys.length) {
+            throw new IllegalArgumentException("A path needs at least two vertices");
+        }
+        int n = xs.length;
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        this.along = new double[n];
+        this.drawX = new int[n];
+        this.drawY = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                double dx = xs[i] - xs[i - 1];
+                double dy = ys[i] - ys[i - 1];
+                along[i] = along[i - 1] + Math.sqrt(dx * dx + dy * dy);
+            }
+            drawX[i] = (int) Math.round(xs[i]);
+            drawY[i] = (int) Math.round(ys[i]);
+        }
+
+        // Leaves bound runs of segments, every level above bounds runs of the boxes below
+        int levels = 1;
+        for (int count = (n - 1 + FANOUT - 1) / FANOUT; count > 1; count = (count + FANOUT - 1) / FANOUT) {
+            levels += 1;
+        }
+        this.boxes = new double[levels][];
+        int count = (n - 1 + FANOUT - 1) / FANOUT;
+        boxes[0] = new double[count * 4];
+        for (int s = 0; s < n - 1; s++) {
+            grow(boxes[0], s / FANOUT, s % FANOUT == 0, Math.min(xs[s], xs[s + 1]), Math.max(xs[s], xs[s + 1]),
+                    Math.min(ys[s], ys[s + 1]), Math.max(ys[s], ys[s + 1]));
+        }
+        for (int level = 1; level < levels; level++) {
+            double[] below = boxes[level - 1];
+            count = (count + FANOUT - 1) / FANOUT;
+            boxes[level] = new double[count * 4];
+            for (int c = 0; c < below.length / 4; c++) {
+                grow(boxes[level], c / FANOUT, c % FANOUT == 0, below[c * 4], below[c * 4 + 1], below[c * 4 + 2],
+                        below[c * 4 + 3]);
+            }
+        }
+    }
+
+    /**
+     * Function to read a path from a text file with one x,y vertex per line.
+     * Empty lines and lines starting with # are skipped.
+     * 
+     * @param path the path of the file
+     * @return the path through the vertices of the file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line is not a vertex or there are
+     *                                  fewer than two vertices
+     */
+    public static ReferencePath load(String path) throws IOException {
+        double[] xs = new double[64];
+        double[] ys = new double[64];
+        int n = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number += 1;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("[,\\s]+");
+                if (parts.length < 2) {
+                    throw new IllegalArgumentException("line " + number + " needs x,y");
+                }
+                if (n == xs.length) {
+                    xs = Arrays.copyOf(xs, n * 2);
+                    ys = Arrays.copyOf(ys, n * 2);
+                }
+                xs[n] = Double.parseDouble(parts[0]);
+                ys[n] = Double.parseDouble(parts[1]);
+                n += 1;
+            }
+        }
+        return new ReferencePath(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n));
+    }
+
+    /**
+     * Function to write the vertices of the path in the format read by load
+     * 
+     * @param path the path of the file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            for (int i = 0; i < xs.length; i++) {
+                out.println(xs[i] + "," + ys[i]);
+            }
+        }
+    }
+
+    /**
+     * Getter function for the number of vertices
+     * 
+     * @return the number of vertices
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * Getter function for the length of the path
+     * 
+     * @return the length in pixels
+     */
+    public double length() {
+        return along[along.length - 1];
+    }
+
+    /**
+     * Function to project a point onto the nearest segment of the path. Nothing
+     * is allocated, so it can run for every frame of a long video.
+     * 
+     * @param x   the x coordinate of the point
+     * @param y   the y coordinate of the point
+     * @param out receives {distance, side, along, heading, segment}: the distance
+     *            to the path, +1 if the point is right of the direction of the
+     *            path, -1 if left and 0 if on it, the length of the path up to
+     *            the projection, the direction of the segment in radians
+     *            clockwise from +x, and the index of the segment
+     */
+    public void project(double x, double y, double[] out) {
+        // out holds the squared distance and index of the best segment while searching
+        out[0] = Double.MAX_VALUE;
+        out[4] = -1;
+        // Following the nearest box down to a leaf gives a close first guess that prunes most of the tree
+        int node = 0;
+        for (int level = boxes.length - 1; level > 0; level--) {
+            double[] below = boxes[level - 1];
+            int first = node * FANOUT;
+            int last = Math.min(first + FANOUT, below.length / 4);
+            double nearest = Double.MAX_VALUE;
+            for (int c = first; c < last; c++) {
+                double d = boxDistanceSq(below, c, x, y);
+                if (d < nearest) {
+                    nearest = d;
+                    node = c;
+                }
+            }
+        }
+        searchLeaf(node, x, y, out);
+        search(boxes.length - 1, 0, x, y, out);
+
+        int s = (int) out[4];
+        double dx = xs[s + 1] - xs[s];
+        double dy = ys[s + 1] - ys[s];
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((x - xs[s]) * dx + (y - ys[s]) * dy) / lengthSq));
+        double cross = dx * (y - ys[s]) - dy * (x - xs[s]);
+        out[0] = Math.sqrt(out[0]);
+        // With y pointing down, a positive cross product is on the right of the direction of travel
+        out[1] = out[0] == 0 ? 0 : Math.signum(cross);
+        out[2] = along[s] + t * Math.sqrt(lengthSq);
+        out[3] = Math.atan2(dy, dx);
+    }
+
+    /**
+     * Utility function to search a node and its children for a segment nearer
+     * than the best one in out, skipping boxes that are no nearer
+     */
+    private void search(int level, int node, double x, double y, double[] out) {
+        if (boxDistanceSq(boxes[level], node, x, y) > out[0]) {
+            return;
+        }
+        if (level == 0) {
+            searchLeaf(node, x, y, out);
+            return;
+        }
+        int last = Math.min(node * FANOUT + FANOUT, boxes[level - 1].length / 4);
+        for (int c = node * FANOUT; c < last; c++) {
+            search(level - 1, c, x, y, out);
+        }
+    }
+
+    /**
+     * Utility function to test the segments of a leaf against the best one in
+     * out. Ties go to the earlier segment, so the result does not depend on the
+     * order the leaves are visited in.
+     */
+    private void searchLeaf(int leaf, double x, double y, double[] out) {
+        int last = Math.min(leaf * FANOUT + FANOUT, xs.length - 1);
+        for (int s = leaf * FANOUT; s < last; s++) {
+            double d = distanceSq(x, y, s);
+            if (d < out[0] || (d == out[0] && s < out[4])) {
+                out[0] = d;
+                out[4] = s;
+            }
+        }
+    }
+
+    /**
+     * Utility function to get the squared distance from a point to a segment
+     */
+    private double distanceSq(double x, double y, int s) {
+        double ax = xs[s];
+        double ay = ys[s];
+        double dx = xs[s + 1] - ax;
+        double dy = ys[s + 1] - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / lengthSq));
+        double ex = ax + t * dx - x;
+        double ey = ay + t * dy - y;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Utility function to get the squared distance from a point to a box, 0 inside it
+     */
+    private static double boxDistanceSq(double[] level, int box, double x, double y) {
+        double dx = Math.max(0, Math.max(level[box * 4] - x, x - level[box * 4 + 1]));
+        double dy = Math.max(0, Math.max(level[box * 4 + 2] - y, y - level[box * 4 + 3]));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Utility function to grow a box to cover another, or to start it over
+     */
+    private static void grow(double[] level, int box, boolean start, double minX, double maxX, double minY,
+            double maxY) {
+        int i = box * 4;
+        level[i] = start ? minX : Math.min(level[i], minX);
+        level[i + 1] = start ? maxX : Math.max(level[i + 1], maxX);
+        level[i + 2] = start ? minY : Math.min(level[i + 2], minY);
+        level[i + 3] = start ? maxY : Math.max(level[i + 3], maxY);
+    }
+}
@@ -0,0 +1,133 @@
+package com.projects.pointtracker;
+
+/**
+ * Plain Java scan kernel, used when the Vector API is not available, for
+ * matchers with a lookup table and as the reference for the vector kernel
+ */
+public class ScalarKernel implements ScanKernel {
+
+    @Override
+    public void scanInt(ColorMatcher matcher, int[] data, int base, int stride, int lowerX, int upperX, int lowerY,
+            int upperY, long[] sums) {
+        if (matcher.table != null) {
+            scanIntTable(matcher.table, data, base, stride, lowerX, upperX, lowerY, upperY, sums);
+            return;
+        }
+        int tr = matcher.red;
+        int tg = matcher.green;
+        int tb = matcher.blue;
+        int threshold = matcher.thresholdSq;
+        long sumX = 0;
+        long sumY = 0;
+        long c = 0;
+
+        for (int y = lowerY; y < upperY; y++) {
+            int row = base + y * stride;
+            long rowCount = 0;
+            for (int x = lowerX; x < upperX; x++) {
+                int color = data[row + x];
+                int dr = ((color >> 16) & 0xff) - tr;
+                int dg = ((color >> 8) & 0xff) - tg;
+                int db = (color & 0xff) - tb;
+                if (dr * dr + dg * dg + db * db <= threshold) {
+                    sumX += x;
+                    rowCount += 1;
+                }
+            }
+            sumY += rowCount * y;
+            c += rowCount;
+        }
+        sums[0] += sumX;
+        sums[1] += sumY;
+        sums[2] += c;
+    }
+
+    @Override
+    public void scanBgr(ColorMatcher matcher, byte[] data, int base, int stride, int lowerX, int upperX, int lowerY,
+            int upperY, long[] sums) {
+        if (matcher.table != null) {
+            scanBgrTable(matcher.table, data, base, stride, lowerX, upperX, lowerY, upperY, sums);
+            return;
+        }
+        int tr = matcher.red;
+        int tg = matcher.green;
+        int tb = matcher.blue;
+        int threshold = matcher.thresholdSq;
+        long sumX = 0;
+        long sumY = 0;
+        long c = 0;
+
+        for (int y = lowerY; y < upperY; y++) {
+            int i = base + y * stride + lowerX * 3;
+            long rowCount = 0;
+            for (int x = lowerX; x < upperX; x++, i += 3) {
+                int db = (data[i] & 0xff) - tb;
+                int dg = (data[i + 1] & 0xff) - tg;
+                int dr = (data[i + 2] & 0xff) - tr;
+                if (dr * dr + dg * dg + db * db <= threshold) {
+                    sumX += x;
+                    rowCount += 1;
+                }
+            }
+            sumY += rowCount * y;
+            c += rowCount;
+        }
+        sums[0] += sumX;
+        sums[1] += sumY;
+        sums[2] += c;
+    }
+
+    /**
+     * Int raster scan that looks every pixel up in the bitset of a matcher
+     */
+    private static void scanIntTable(long[] table, int[] data, int base, int stride, int lowerX, int upperX,
+            int lowerY, int upperY, long[] sums) {
+        long sumX = 0;
+        long sumY = 0;
+        long c = 0;
+
+        for (int y = lowerY; y < upperY; y++) {
+            int row = base + y * stride;
+            long rowCount = 0;
+            for (int x = lowerX; x < upperX; x++) {
+                int color = data[row + x] & 0xffffff;
+                if ((table[color >>> 6] >>> color & 1) != 0) {
+                    sumX += x;
+                    rowCount += 1;
+                }
+            }
+            sumY += rowCount * y;
+            c += rowCount;
+        }
+        sums[0] += sumX;
+        sums[1] += sumY;
+        sums[2] += c;
+    }
+
+    /**
+     * Byte raster scan that looks every pixel up in the bitset of a matcher
+     */
+    private static void scanBgrTable(long[] table, byte[] data, int base, int stride, int lowerX, int upperX,
+            int lowerY, int upperY, long[] sums) {
+        long sumX = 0;
+        long sumY = 0;
+        long c = 0;
+
+        for (int y = lowerY; y < upperY; y++) {
+            int i = base + y * stride + lowerX * 3;
+            long rowCount = 0;
+            for (int x = lowerX; x < upperX; x++, i += 3) {
+                int color = (data[i + 2] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i] & 0xff);
+                if ((table[color >>> 6] >>> color & 1) != 0) {
+                    sumX += x;
+                    rowCount += 1;
+                }
+            }
+            sumY += rowCount * y;
+            c += rowCount;
+        }
+        sums[0] += sumX;
+        sums[1] += sumY;
+        sums[2] += c;
+    }
+}
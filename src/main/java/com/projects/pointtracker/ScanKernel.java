@@ -0,0 +1,41 @@
+package com.projects.pointtracker;
+
+/**
+ * Inner loop of PixelScanner over the backing array of a raster. Implementations
+ * add the {sumX, sumY, count} of the pixels in the window that match the color.
+ */
+public interface ScanKernel {
+
+    /**
+     * Function to scan a window of a packed int raster (TYPE_INT_RGB or
+     * TYPE_INT_ARGB)
+     * 
+     * @param matcher the color test
+     * @param data    the backing array of the raster
+     * @param base    the index of pixel (0, 0) in data
+     * @param stride  the number of array elements per row
+     * @param lowerX  lower x bound (inclusive)
+     * @param upperX  upper x bound (exclusive)
+     * @param lowerY  lower y bound (inclusive)
+     * @param upperY  upper y bound (exclusive)
+     * @param sums    running {sumX, sumY, count} of the matching pixels
+     */
+    void scanInt(ColorMatcher matcher, int[] data, int base, int stride, int lowerX, int upperX, int lowerY,
+            int upperY, long[] sums);
+
+    /**
+     * Function to scan a window of an interleaved byte raster (TYPE_3BYTE_BGR)
+     * 
+     * @param matcher the color test
+     * @param data    the backing array of the raster
+     * @param base    the index of the first byte of pixel (0, 0) in data
+     * @param stride  the number of bytes per row
+     * @param lowerX  lower x bound (inclusive)
+     * @param upperX  upper x bound (exclusive)
+     * @param lowerY  lower y bound (inclusive)
+     * @param upperY  upper y bound (exclusive)
+     * @param sums    running {sumX, sumY, count} of the matching pixels
+     */
+    void scanBgr(ColorMatcher matcher, byte[] data, int base, int stride, int lowerX, int upperX, int lowerY,
+            int upperY, long[] sums);
+}
@@ -0,0 +1,194 @@
+package com.projects.pointtracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tracks a long video as several time segments in parallel, since a single
+ * pass is sequential and only uses one core for tracking. Every segment seeks
+ * to its start and starts a few frames early, acquiring the points from scratch
+ * as at the start of the video. Where the early frames of a segment agree with
+ * the end of the previous one, the tracks are joined. Otherwise the previous
+ * track is continued through the segment, so a segment that locked onto
+ * something else is tracked again rather than trusted.
+ */
+public class SegmentTracker {
+
+    // Tracker holding the video and the search settings
+    private final Tracker tracker;
+
+    // Largest distance in pixels between two tracks of a point that still agree
+    public double agreement;
+
+    // Number of segments joined and tracked again by the last call to track
+    public int joined;
+    public int retracked;
+
+    /**
+     * Constructor to create a segment tracker for the video of a tracker
+     * 
+     * @param tracker the tracker holding the video and the search settings
+     */
+    public SegmentTracker(Tracker tracker) {
+        this.tracker = tracker;
+        // Tracking a downscaled region rounds the coordinates to its pixels
+        this.agreement = Math.max(2, 2 / Math.min(1, tracker.analysisScale));
+    }
+
+    /**
+     * Function to track the targets in parallel segments and stitch the tracks
+     * into the coordinates of the targets, as a single pass would leave them
+     * 
+     * @param targets  the targets to track
+     * @param segments the number of segments to split the video into
+     * @param overlap  the number of frames each segment starts before its share
+     * @return true if the targets hold the track of the whole video, false if the
+     *         video cannot be split, a segment failed or the run was cancelled
+     */
+    public boolean track(List<Target> targets, int segments, int overlap) {
+        joined = 0;
+        retracked = 0;
+        int frameCount = tracker.frameCount;
+        overlap = Math.max(2, overlap);
+        // Every segment is at least twice as long as its overlap
+        int count = (int) Math.min(segments, frameCount / (2L * overlap));
+        if (count < 2 || tracker.fps <= 0) {
+            return false;
+        }
+        int length = (frameCount + count - 1) / count;
+        count = (frameCount + length - 1) / length;
+
+        List<List<Target>> parts = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(count, Runtime.getRuntime().availableProcessors()), Threads.CPU);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                List<Target> part = new ArrayList<>();
+                for (Target target : targets) {
+                    part.add(target.copy());
+                }
+                parts.add(part);
+                int first = Math.max(0, i * length - overlap);
+                int frames = i == count - 1 ? -1 : (i + 1) * length - first;
+                Tracker worker = tracker.worker();
+                results.add(pool.submit(() -> worker.trackRange(part, first, frames, false)));
+            }
+            for (Future<Boolean> result : results) {
+                if (!result.get()) {
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int n = targets.size();
+        List<List<int[]>> merged = new ArrayList<>();
+        for (Target target : parts.get(0)) {
+            merged.add(new ArrayList<>(target.coords));
+        }
+        // Targets whose motion state is at the end of the merged track
+        List<Target> tail = parts.get(0);
+        for (int i = 1; i < count; i++) {
+            int start = i * length;
+            if (merged.get(0).size() < start) {
+                // The video ended before its probed frame count
+                break;
+            }
+            int first = start - overlap;
+            List<Target> part = parts.get(i);
+            int[] joins = new int[n];
+            boolean agreed = true;
+            for (int t = 0; t < n && agreed; t++) {
+                joins[t] = join(merged.get(t), part.get(t).coords, first, start);
+                agreed = joins[t] >= 0;
+            }
+
+            if (agreed) {
+                for (int t = 0; t < n; t++) {
+                    List<int[]> coords = part.get(t).coords;
+                    List<int[]> track = merged.get(t);
+                    track.subList(joins[t], track.size()).clear();
+                    track.addAll(coords.subList(joins[t] - first, coords.size()));
+                }
+                tail = part;
+                joined += 1;
+                continue;
+            }
+
+            if (tracker.verbose) {
+                System.out.println("Segment " + (i + 1) + " disagrees with segment " + i
+                        + ", tracking it again from frame " + (start + 1));
+            }
+            int before = tail.get(0).coords.size();
+            if (!tracker.worker().trackRange(tail, start, i == count - 1 ? -1 : length, true)) {
+                return false;
+            }
+            for (int t = 0; t < n; t++) {
+                List<int[]> coords = tail.get(t).coords;
+                merged.get(t).addAll(coords.subList(before, coords.size()));
+            }
+            retracked += 1;
+        }
+
+        for (int t = 0; t < n; t++) {
+            Target target = targets.get(t);
+            target.reset();
+            target.coords.addAll(merged.get(t));
+            target.lost = (int) target.coords.stream().filter(c -> c == null).count();
+        }
+        if (tracker.verbose) {
+            System.out.println("Tracked " + count + " segments: " + joined + " joined, " + retracked
+                    + " tracked again");
+        }
+        return true;
+    }
+
+    /**
+     * Utility function to find where a segment can take over from the track
+     * before it. The two must agree on every frame from the join to the end of
+     * the overlap, and on at least two frames, so the motion models of both
+     * have settled on the same point.
+     * 
+     * @param track  the track up to the end of the overlap, from frame 0
+     * @param coords the track of the segment, from its first frame
+     * @param first  the frame number of the first frame of the segment
+     * @param start  the frame number of the first frame after the overlap
+     * @return the frame number the segment takes over at, or -1 if they disagree
+     */
+    private int join(List<int[]> track, List<int[]> coords, int first, int start) {
+        if (coords.size() < start - first) {
+            return -1;
+        }
+        int join = start;
+        while (join > first && agree(track.get(join - 1), coords.get(join - 1 - first))) {
+            join -= 1;
+        }
+        return start - join >= 2 ? join : -1;
+    }
+
+    /**
+     * Utility function to check whether two tracks place a point in the same spot
+     * 
+     * @param a the coordinates of one track, or null if it lost the point
+     * @param b the coordinates of the other track, or null if it lost the point
+     * @return true if both lost the point or found it within the agreement distance
+     */
+    private boolean agree(int[] a, int[] b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Math.hypot(a[0] - b[0], a[1] - b[1]) <= agreement;
+    }
+}
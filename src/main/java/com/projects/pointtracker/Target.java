@@ -0,0 +1,112 @@
+package com.projects.pointtracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A colored point to track, with its own tolerance, motion model and tracked
+ * coordinates
+ */
+public class Target {
+
+    // Integer representation of the target color
+    public final int color;
+
+    // Maximum color difference in percent for a pixel to match the target color
+    public final double tolerance;
+
+    // Color space the difference is measured in
+    public final ColorMetric metric;
+
+    // Motion model used to predict the point in the next frame
+    public final MotionPredictor predictor;
+
+    // Tracked coordinates of the point in every frame of the last run, null where it was lost
+    public final List<int[]> coords = new ArrayList<>();
+
+    // Number of frames of the last run in which the point was lost
+    public int lost = 0;
+
+    // Scanner matching the target color
+    private final PixelScanner scanner;
+
+    /**
+     * Constructor to create a target with the default tolerance and a linear
+     * motion model
+     * 
+     * @param color the integer representation of the target color
+     */
+    public Target(int color) {
+        this(color, 15, new LinearPredictor());
+    }
+
+    /**
+     * Constructor to create a target
+     * 
+     * @param color     the integer representation of the target color
+     * @param tolerance the maximum color difference in percent
+     * @param predictor the motion model of the point
+     */
+    public Target(int color, double tolerance, MotionPredictor predictor) {
+        this(color, tolerance, ColorMetric.RGB, predictor);
+    }
+
+    /**
+     * Constructor to create a target matched in a color metric. For HSV and LAB
+     * this classifies every color once, which takes a moment.
+     * 
+     * @param color     the integer representation of the target color
+     * @param tolerance the maximum color difference, see ColorMetric
+     * @param metric    the color space to compare colors in
+     * @param predictor the motion model of the point
+     */
+    public Target(int color, double tolerance, ColorMetric metric, MotionPredictor predictor) {
+        this.color = color;
+        this.tolerance = tolerance;
+        this.metric = metric;
+        this.predictor = predictor;
+        this.scanner = new PixelScanner(new ColorMatcher(color, tolerance, metric));
+    }
+
+    /**
+     * Constructor to create a copy of a target with a fresh motion model and no
+     * coordinates, sharing the scanner so lookup tables are not built again
+     * 
+     * @param other the target to copy
+     */
+    private Target(Target other) {
+        this.color = other.color;
+        this.tolerance = other.tolerance;
+        this.metric = other.metric;
+        this.predictor = other.predictor.fresh();
+        this.scanner = other.scanner;
+    }
+
+    /**
+     * Getter function for the scanner matching the target color
+     * 
+     * @return the scanner of this target
+     */
+    public PixelScanner getScanner() {
+        return scanner;
+    }
+
+    /**
+     * Function to copy the target, e.g. to track another part of the video at the
+     * same time
+     * 
+     * @return a target with the same color test and motion model settings
+     */
+    public Target copy() {
+        return new Target(this);
+    }
+
+    /**
+     * Function to clear the coordinates and motion state before a new run
+     */
+    public void reset() {
+        coords.clear();
+        lost = 0;
+        predictor.reset();
+    }
+}
@@ -0,0 +1,37 @@
+package com.projects.pointtracker;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the tracker. Threads that mostly block on ffmpeg and
+ * ffprobe pipes are virtual threads when the runtime has them (Java 21+), so
+ * hundreds of concurrent processes cost no platform threads. Older runtimes fall
+ * back to daemon platform threads.
+ */
+public class Threads {
+
+    // Factory for compute threads, declared first since IO falls back to it
+    public static final ThreadFactory CPU = runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    // Factory for threads that block on process pipes
+    public static final ThreadFactory IO = ioFactory();
+
+    /**
+     * Utility function to create the factory for threads that block on process
+     * pipes. Looked up reflectively since the program is compiled for Java 17.
+     * 
+     * @return a virtual thread factory, or the compute factory if there is none
+     */
+    private static ThreadFactory ioFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return CPU;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.projects.pointtracker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of tracked coordinates, so a video whose scale or overlay
+ * changed is only re-rendered instead of tracked again. Tracks are keyed by a
+ * hash of the video content, the target colors, tolerances and color metrics,
+ * the motion models, the search, blob, motion mask and centroid parameters and
+ * the region of interest. Each file holds the coordinates of every frame as
+ * gzipped {x, y} ints, with -1 for a lost point.
+ */
+public class TrackCache {
+
+    // Marks a track file, "PTTK"
+    private static final int MAGIC = 0x5054544b;
+
+    // Version of the file layout
+    private static final int VERSION = 1;
+
+    // Folder holding one file per cached track
+    private final File folder;
+
+    /**
+     * Constructor to create a cache in a folder, which is created on first save
+     * 
+     * @param folder the folder to keep the track files in
+     */
+    public TrackCache(String folder) {
+        this.folder = new File(folder);
+    }
+
+    /**
+     * Function to derive the cache key of a tracking run
+     * 
+     * @param videoHash the hash of the video content, see hashFile
+     * @param tracker   the tracker holding the search parameters
+     * @param targets   the targets to track
+     * @return the key as a hex string
+     */
+    public static String key(String videoHash, Tracker tracker, List<Target> targets) {
+        StringBuilder text = new StringBuilder(videoHash);
+        text.append('|').append(tracker.searchSigmas).append('|').append(tracker.minSearchRadius).append('|')
+                .append(tracker.usePyramid).append('|').append(Arrays.toString(tracker.roi)).append('|')
+                .append(tracker.analysisScale).append('|').append(tracker.useBlobs).append('|')
+                .append(tracker.minBlobArea).append('|').append(tracker.useMotionMask).append('|')
+                .append(tracker.maxStride).append('|').append(tracker.subPixel);
+        for (Target target : targets) {
+            text.append('|').append(Integer.toHexString(target.color)).append(',').append(target.tolerance)
+                    .append(',').append(target.metric).append(',').append(target.predictor.describe());
+        }
+        return hashText(text.toString());
+    }
+
+    /**
+     * Utility function to hash a string, e.g. to derive a file name from a path
+     * 
+     * @param text the text to hash
+     * @return the SHA-256 of the UTF-8 text as a hex string
+     */
+    public static String hashText(String text) {
+        return hex(digest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Utility function to hash the content of a file
+     * 
+     * @param path the path of the file
+     * @return the SHA-256 of the file as a hex string
+     * @throws IOException if the file cannot be read
+     */
+    public static String hashFile(String path) throws IOException {
+        MessageDigest digest = digest();
+        byte[] buffer = new byte[1 << 20];
+        try (InputStream in = new FileInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Function to load a cached track into the coordinates of the targets
+     * 
+     * @param key     the key of the track
+     * @param targets the targets to fill, in the order they were saved
+     * @return true if the track was found and loaded
+     */
+    public boolean load(String key, List<Target> targets) {
+        File file = file(key);
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            int frames = in.readInt();
+            int n = in.readInt();
+            if (n != targets.size()) {
+                return false;
+            }
+            List<List<int[]>> coords = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                coords.add(new ArrayList<>(frames));
+            }
+            for (int f = 0; f < frames; f++) {
+                for (int i = 0; i < n; i++) {
+                    int x = in.readInt();
+                    int y = in.readInt();
+                    coords.get(i).add(x < 0 ? null : new int[] { x, y });
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                Target target = targets.get(i);
+                target.reset();
+                target.coords.addAll(coords.get(i));
+                target.lost = (int) target.coords.stream().filter(c -> c == null).count();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Function to save the coordinates of the targets as a track. The track is
+     * written to a temporary file of its own and moved over the track file, so
+     * jobs saving the same track at the same time do not write into or rename
+     * each other's files.
+     * 
+     * @param key     the key of the track
+     * @param targets the tracked targets
+     * @return true if the track was saved
+     */
+    public boolean save(String key, List<Target> targets) {
+        folder.mkdirs();
+        File file = file(key);
+        File partial;
+        try {
+            partial = File.createTempFile(key + "-", ".tmp", folder);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        int frames = targets.isEmpty() ? 0 : targets.get(0).coords.size();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(partial))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(frames);
+            out.writeInt(targets.size());
+            for (int f = 0; f < frames; f++) {
+                for (Target target : targets) {
+                    int[] c = target.coords.get(f);
+                    out.writeInt(c == null ? -1 : c[0]);
+                    out.writeInt(c == null ? -1 : c[1]);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            partial.delete();
+            return false;
+        }
+        try {
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            partial.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Utility function to get the file of a track
+     * 
+     * @param key the key of the track
+     * @return the track file in the cache folder
+     */
+    private File file(String key) {
+        return new File(folder, key + ".track");
+    }
+
+    /**
+     * Utility function to create a SHA-256 digest
+     * 
+     * @return a new digest
+     */
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Utility function to format bytes as hex
+     * 
+     * @param bytes the bytes to format
+     * @return the lowercase hex string
+     */
+    private static String hex(byte[] bytes) {
+        StringBuilder text = new StringBuilder();
+        for (byte b : bytes) {
+            text.append(String.format("%02x", b));
+        }
+        return text.toString();
+    }
+}
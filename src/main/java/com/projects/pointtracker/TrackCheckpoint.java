@@ -0,0 +1,217 @@
+package com.projects.pointtracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only checkpoint of a tracking run in progress, so a run that fails or
+ * is killed can continue from its last checkpoint instead of the first frame.
+ * Every record appends the coordinates tracked since the previous record, the
+ * state of each motion model and the number of frames each point was lost in,
+ * and ends with a line holding the number of frames tracked so far. A record
+ * cut short by a crash has no end line and is dropped when the file is loaded.
+ * 
+ * <pre>
+ * pointtracker-checkpoint 1 &lt;targets&gt;
+ * c &lt;target&gt; &lt;x,y or -&gt; ...
+ * s &lt;target&gt; &lt;lost&gt; &lt;motion model state&gt; ...
+ * end &lt;frames&gt;
+ * </pre>
+ */
+public class TrackCheckpoint {
+
+    // First word of the file
+    private static final String MAGIC = "pointtracker-checkpoint";
+
+    // Version of the file layout
+    private static final int VERSION = 1;
+
+    // The checkpoint file
+    private final File file;
+
+    // Number of frames of the targets already in the file
+    private int written = 0;
+
+    /**
+     * Constructor to create the checkpoint of a run in a folder, which is
+     * created on the first append. Runs of the same track into different
+     * output videos, e.g. batch jobs that only differ in scale, get their own
+     * checkpoints, so they never append to or cut each other's file.
+     * 
+     * @param folder the folder to keep the checkpoint in
+     * @param key    the key of the run, as for TrackCache
+     * @param output the path of the output video of the run
+     */
+    public TrackCheckpoint(String folder, String key, String output) {
+        String run = TrackCache.hashText(new File(output).getAbsolutePath()).substring(0, 16);
+        this.file = new File(folder, key + "-" + run + ".checkpoint");
+    }
+
+    /**
+     * Function to restore the coordinates, lost counts and motion models of the
+     * targets from the last complete record. Anything after it is cut off so
+     * new records follow on from it. If there is nothing to restore the file is
+     * deleted and the targets are left as they are.
+     * 
+     * @param targets the targets to restore, in the order they were saved
+     * @return the number of frames restored, 0 if there is no usable checkpoint
+     */
+    public int load(List<Target> targets) {
+        written = 0;
+        if (!file.isFile()) {
+            return 0;
+        }
+        int n = targets.size();
+        try {
+            String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+            List<List<int[]>> coords = new ArrayList<>();
+            List<List<int[]>> pending = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                coords.add(new ArrayList<>());
+                pending.add(new ArrayList<>());
+            }
+            int[] lost = new int[n];
+            double[][] states = new double[n][];
+            int[] pendingLost = new int[n];
+            double[][] pendingStates = new double[n][];
+            int frames = 0;
+            // Length of the file up to the end of the last complete record
+            int committed = 0;
+
+            int start = 0;
+            boolean header = true;
+            while (start < text.length()) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    // A line cut short by a crash
+                    break;
+                }
+                String[] words = text.substring(start, end).split(" ");
+                start = end + 1;
+                if (header) {
+                    if (words.length != 3 || !words[0].equals(MAGIC) || Integer.parseInt(words[1]) != VERSION
+                            || Integer.parseInt(words[2]) != n) {
+                        break;
+                    }
+                    header = false;
+                    committed = start;
+                } else if (words[0].equals("c")) {
+                    List<int[]> track = pending.get(Integer.parseInt(words[1]));
+                    for (int w = 2; w < words.length; w++) {
+                        int comma = words[w].indexOf(',');
+                        track.add(comma < 0 ? null : new int[] { Integer.parseInt(words[w].substring(0, comma)),
+                                Integer.parseInt(words[w].substring(comma + 1)) });
+                    }
+                } else if (words[0].equals("s")) {
+                    int target = Integer.parseInt(words[1]);
+                    pendingLost[target] = Integer.parseInt(words[2]);
+                    pendingStates[target] = new double[words.length - 3];
+                    for (int w = 3; w < words.length; w++) {
+                        pendingStates[target][w - 3] = Double.parseDouble(words[w]);
+                    }
+                } else if (words[0].equals("end")) {
+                    int total = Integer.parseInt(words[1]);
+                    boolean complete = true;
+                    for (int i = 0; i < n; i++) {
+                        complete &= coords.get(i).size() + pending.get(i).size() == total && pendingStates[i] != null;
+                    }
+                    if (!complete) {
+                        break;
+                    }
+                    for (int i = 0; i < n; i++) {
+                        coords.get(i).addAll(pending.get(i));
+                        pending.get(i).clear();
+                        lost[i] = pendingLost[i];
+                        states[i] = pendingStates[i];
+                        pendingStates[i] = null;
+                    }
+                    frames = total;
+                    committed = start;
+                } else {
+                    break;
+                }
+            }
+
+            if (frames == 0) {
+                file.delete();
+                return 0;
+            }
+            for (int i = 0; i < n; i++) {
+                Target target = targets.get(i);
+                target.reset();
+                target.predictor.restore(states[i]);
+                target.coords.addAll(coords.get(i));
+                target.lost = lost[i];
+            }
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(committed);
+            }
+            written = frames;
+            return frames;
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            for (Target target : targets) {
+                target.reset();
+            }
+            file.delete();
+            return 0;
+        }
+    }
+
+    /**
+     * Function to append the frames tracked since the last record and the state
+     * of the motion models, and wait until the record is on disk
+     * 
+     * @param targets the targets being tracked, holding every frame of the run
+     * @throws IOException if the record cannot be written
+     */
+    public void append(List<Target> targets) throws IOException {
+        int frames = targets.get(0).coords.size();
+        StringBuilder record = new StringBuilder();
+        if (written == 0) {
+            file.getParentFile().mkdirs();
+            record.append(MAGIC).append(' ').append(VERSION).append(' ').append(targets.size()).append('\n');
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            Target target = targets.get(i);
+            record.append("c ").append(i);
+            for (int f = written; f < frames; f++) {
+                int[] c = target.coords.get(f);
+                record.append(' ');
+                if (c == null) {
+                    record.append('-');
+                } else {
+                    record.append(c[0]).append(',').append(c[1]);
+                }
+            }
+            record.append('\n');
+            record.append("s ").append(i).append(' ').append(target.lost);
+            for (double value : target.predictor.save()) {
+                record.append(' ').append(value);
+            }
+            record.append('\n');
+        }
+        record.append("end ").append(frames).append('\n');
+
+        // A new run starts the file over
+        try (FileOutputStream out = new FileOutputStream(file, written > 0)) {
+            out.write(record.toString().getBytes(StandardCharsets.US_ASCII));
+            out.getChannel().force(false);
+        }
+        written = frames;
+    }
+
+    /**
+     * Function to delete the checkpoint once the run it belongs to is done
+     */
+    public void delete() {
+        file.delete();
+        written = 0;
+    }
+}
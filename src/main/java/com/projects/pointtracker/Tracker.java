@@ -10,14 +10,20 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * Backend tracker class for program
  */
 public class Tracker {
 
-    // Deconstructed frames folder
-    public static String imageFolder = ".\\target\\classes\\images";
+    // Color of the overlays
+    private static final Color OVERLAY = new Color(255, 0, 0);
+
+    // Deconstructed frames folder, only used in debug mode. Give concurrent trackers their own folders.
+    public String imageFolder = ".\\target\\classes\\images";
 
     // Input path of the video file
     public String inputPath;
@@ -34,6 +40,134 @@ public class Tracker {
     // Integer representation of rgba color
     public int color;
 
+    // Targets to track in a single pass, or empty to track only color
+    public List<Target> targets = new ArrayList<>();
+
+    // Maximum color difference in percent for a pixel to match the target color
+    public double tolerance = 15;
+
+    // Color space pixels are compared to the target color in
+    public ColorMetric colorMetric = ColorMetric.RGB;
+
+    // Cached scanner for the last searched target color and tolerance
+    private PixelScanner scanner;
+
+    // Number of pixels scanned by the last call to findPoint
+    public long lastPixelsVisited;
+
+    // Number of search iterations of the last call to findPoint
+    public int lastIterations;
+
+    // Receiver of the per-frame timings and search effort, NOOP when not measured
+    public Metrics metrics = Metrics.NOOP;
+
+    // Motion model used to predict the point in the next frame
+    public MotionPredictor predictor = new LinearPredictor();
+
+    // Number of standard deviations of the prediction covered by the first search window
+    public double searchSigmas = 3;
+
+    // Smallest half-size of the first search window in pixels
+    public int minSearchRadius = 8;
+
+    // Whether to re-acquire a point through the image pyramid when its first search window is empty
+    public boolean usePyramid = true;
+
+    // Whether a point is the blob of matching pixels nearest the prediction, instead of the centroid of every
+    // matching pixel in a window grown until it settles
+    public boolean useBlobs = true;
+
+    // Smallest blob that is taken for the point while a larger one is in the window, smaller ones being noise
+    public int minBlobArea = 4;
+
+    // Labeler used by findPoint
+    private final BlobDetector blobDetector = new BlobDetector();
+
+    // Blob the last call to locate or follow took the point from, or null
+    public Blob lastBlob;
+
+    // Whether the search skips tiles that did not change since earlier frames, for fixed camera footage
+    public boolean useMotionMask = false;
+
+    // Motion mask of the frame being tracked, set up by the pipeline when useMotionMask is set, or null
+    public MotionMask motionMask;
+
+    // Largest number of frames between full searches of a point, which is followed from its prediction in
+    // between, see KeyframeSchedule. 1 searches every frame fully.
+    public int maxStride = 1;
+
+    // Whether centroids are rounded from their exact position instead of truncated, and mapped back to full
+    // resolution from it rather than from the analysis pixel they fall in, for 4K and 8K footage tracked downscaled
+    public boolean subPixel = false;
+
+    // Exact centroid in analysis pixels of the point the last call to locate or follow found, or null
+    public double[] lastCentroid;
+
+    // Largest number of bytes the frame buffers of a run may hold at once, 0 for no limit
+    public long frameMemory = 1L << 30;
+
+    // The width and height of the input video frames
+    public int width;
+    public int height;
+
+    // The number of frames in the input video, or -1 if ffprobe does not report it
+    public int frameCount = -1;
+
+    // Whether to log the search iterations and progress of every frame
+    public boolean verbose = true;
+
+    // Extra sink that sees every annotated frame once it is written, e.g. a live preview, or null
+    public FrameSink monitor;
+
+    // Check polled before every frame of every pass, which stops the run once it returns true, or null
+    public BooleanSupplier cancelled;
+
+    // Whether to reuse tracks cached for the same video, targets and search parameters
+    public boolean useCache = true;
+
+    // Folder of the cached tracks
+    public String cacheFolder = new File("target", "track-cache").getPath();
+
+    // Hash of the input video content, computed on first use of the cache
+    private String videoHash;
+
+    // Region of interest as {x, y, width, height} in video pixels, or null to track in the whole frame
+    public int[] roi;
+
+    // Factor the region of interest is downscaled by before tracking, 1 to track at full resolution
+    public double analysisScale = 1;
+
+    // Decoded frames of the input video, read instead of running ffmpeg once built, or null
+    public MappedFrameStore frameStore;
+
+    // Folder of the raw frame stores
+    public String frameStoreFolder = new File("target", "frame-store").getPath();
+
+    // Largest frame store in bytes that is built, 0 to always seek with ffmpeg instead
+    public long frameStoreLimit = 4L << 30;
+
+    // Debug mode: extract every frame as a PNG into imageFolder instead of streaming from ffmpeg
+    public boolean debugFrames = false;
+
+    // Number of time segments tracked in parallel, 1 to track the whole video in one pass
+    public int segments = 1;
+
+    // Number of frames each segment starts before its share, compared to stitch it to the previous segment
+    public int segmentOverlap = 30;
+
+    // Number of frames between checkpoints of a single pass run, 0 to never checkpoint. Checkpoints are keyed
+    // like cached tracks, so the input video is hashed for them even without useCache.
+    public int checkpointInterval = 1000;
+
+    // Checkpoint of the run in progress, or null
+    private TrackCheckpoint checkpoint;
+
+    // Path the points are meant to follow in video pixels, or null to skip the deviation analytics
+    public ReferencePath path;
+
+    // Deviation from the path measured by the last drawn run, or null
+    public PathAnalytics pathAnalytics;
+
     /**
      * Constructor to create a tracker object with a specified input video
      * 
@@ -42,6 +176,29 @@ public class Tracker {
     public Tracker(String inputPath) {
         this.inputPath = inputPath;
         this.fps = getFPS(inputPath);
+
+        int[] info = getVideoInfo(inputPath);
+        this.width = info[0];
+        this.height = info[1];
+        this.frameCount = info[2];
+    }
+
+    /**
+     * Constructor to create a tracker object for a video that has already been
+     * probed, or for frames that do not come from a file
+     * 
+     * @param inputPath  the path of the input video
+     * @param fps        the fps of the input video
+     * @param width      the width of the video frames
+     * @param height     the height of the video frames
+     * @param frameCount the number of frames, or -1 if unknown
+     */
+    public Tracker(String inputPath, double fps, int width, int height, int frameCount) {
+        this.inputPath = inputPath;
+        this.fps = fps;
+        this.width = width;
+        this.height = height;
+        this.frameCount = frameCount;
     }
 
     /**
@@ -60,7 +217,7 @@ public class Tracker {
      * 
      * @return true if flushed successfully
      */
-    public static boolean flushFrames() {
+    public boolean flushFrames() {
         File directory = new File(imageFolder);
         File[] files = directory.listFiles();
         if (files != null) {
@@ -108,6 +265,326 @@ public class Tracker {
         return toReturn;
     }
 
+    /**
+     * Utility function to get the frame size and frame count of the input video
+     * using ffprobe command line tool
+     * 
+     * @param targetVideo path to target video
+     * @return an array of {width, height, frame count}, where the frame count is -1
+     *         if it is not stored in the container
+     */
+    public int[] getVideoInfo(String targetVideo) {
+        int[] toReturn = { -1, -1, -1 };
+        try {
+            Process process = new ProcessBuilder(
+                    "ffprobe", "-v",
+                    "error", "-select_streams",
+                    "v:0", "-show_entries",
+                    "stream=width,height,nb_frames",
+                    "-of", "default=noprint_wrappers=1", targetVideo).redirectErrorStream(true).start();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("=");
+                if (parts.length != 2 || !parts[1].matches("\\d+")) {
+                    continue;
+                }
+                if (parts[0].equals("width")) {
+                    toReturn[0] = Integer.parseInt(parts[1]);
+                } else if (parts[0].equals("height")) {
+                    toReturn[1] = Integer.parseInt(parts[1]);
+                } else if (parts[0].equals("nb_frames")) {
+                    toReturn[2] = Integer.parseInt(parts[1]);
+                }
+            }
+            process.waitFor();
+            process.destroy();
+
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+        return toReturn;
+    }
+
+    /**
+     * Function to decode the input video once into a memory-mapped frame store,
+     * which later runs and seeks read instead of decoding again. The store is
+     * skipped when it would be larger than frameStoreLimit or the free space of
+     * its folder, and frames are then read with ffmpeg seeking. Without a probed
+     * frame count the limit is only found out while decoding.
+     * 
+     * @return true if the store was built
+     */
+    public boolean buildFrameStore() {
+        closeFrameStore();
+        File folder = new File(frameStoreFolder);
+        folder.mkdirs();
+        long limit = Math.min(frameStoreLimit, folder.getUsableSpace());
+        long bytes = (long) width * height * 3 * frameCount;
+        String path = new File(folder, frameStoreName()).getPath();
+        try {
+            if (limit > 0 && (frameCount <= 0 || bytes <= limit)) {
+                frameStore = MappedFrameStore.create(inputPath, path, width, height, limit);
+            }
+            if (frameStore == null) {
+                if (verbose) {
+                    System.out.println("Frame store over " + (limit >> 20) + " MB skipped, seeking with ffmpeg");
+                }
+                return false;
+            }
+            if (frameCount <= 0) {
+                frameCount = frameStore.getFrameCount();
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Utility function to get the file name of the frame store, keyed on the
+     * canonical path of the input so videos of the same name never share one
+     * 
+     * @return the name of the raw file
+     */
+    private String frameStoreName() {
+        File input = new File(inputPath);
+        String key;
+        try {
+            key = input.getCanonicalPath();
+        } catch (IOException e) {
+            key = input.getAbsolutePath();
+        }
+        return input.getName() + "-" + TrackCache.hashText(key).substring(0, 16) + ".raw";
+    }
+
+    /**
+     * Utility function to close the frame store and delete its file
+     */
+    public void closeFrameStore() {
+        if (frameStore != null) {
+            frameStore.delete();
+            frameStore = null;
+        }
+    }
+
+    /**
+     * Utility function to read any frame of the input video from the frame store,
+     * or with ffmpeg seeking if there is no store
+     * 
+     * @param index the 0-based frame number
+     * @return the frame, or null if there is no such frame or it cannot be read
+     */
+    public BufferedImage frameAt(int index) {
+        if (frameStore == null && (debugFrames || fps <= 0)) {
+            return null;
+        }
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        if (frameStore != null) {
+            try {
+                return frameStore.read(index, frame) ? frame : null;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        try (FrameSource source = openFrames(index, 1)) {
+            return source.read(frame) ? frame : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Utility function to open the frames of the input video. Frames are read from
+     * the frame store if it has been built, otherwise streamed from ffmpeg unless
+     * debugFrames is set, in which case the PNGs extracted by deconstruct are read
+     * back.
+     * 
+     * @return a frame source positioned at the first frame
+     * @throws IOException if the frames could not be opened
+     */
+    public FrameSource openFrames() throws IOException {
+        return openFrames(0, -1);
+    }
+
+    /**
+     * Utility function to open a range of frames of the input video, seeking to
+     * the first one. PNGs extracted by deconstruct can only be read from the start.
+     * 
+     * @param first the 0-based number of the first frame
+     * @param count the number of frames to read, or -1 to read to the end
+     * @return a frame source positioned at the first frame of the range
+     * @throws IOException if the frames could not be opened
+     */
+    public FrameSource openFrames(int first, int count) throws IOException {
+        if (frameStore != null) {
+            return frameStore.source(first, count);
+        }
+        if (debugFrames) {
+            if (first != 0 || count >= 0) {
+                throw new IOException("Extracted frames can only be read as a whole");
+            }
+            return new ImageFolderFrameSource(imageFolder);
+        }
+        return new FfmpegFrameSource(inputPath, width, height, null, seekTime(first), count);
+    }
+
+    /**
+     * Utility function to get the time ffmpeg seeks to for a frame. It is half a
+     * frame early so rounding of the timestamps cannot skip the frame.
+     * 
+     * @param index the 0-based frame number
+     * @return the time in seconds, or 0 for the first frame
+     */
+    private double seekTime(int index) {
+        return index > 0 ? (index - 0.5) / fps : 0;
+    }
+
+    /**
+     * Utility function to get the size of the frames the points are tracked in
+     * 
+     * @return the {width, height} of the region of interest after downscaling
+     */
+    public int[] analysisSize() {
+        int w = roi != null ? roi[2] : width;
+        int h = roi != null ? roi[3] : height;
+        if (analysisScale >= 1) {
+            return new int[] { w, h };
+        }
+        return new int[] { Math.max(1, (int) Math.round(w * analysisScale)),
+                Math.max(1, (int) Math.round(h * analysisScale)) };
+    }
+
+    /**
+     * Utility function to open the downscaled region of interest of the input
+     * video. The crop and scale run in the ffmpeg filter graph, so only the small
+     * frames cross the pipe. Nearest neighbour sampling keeps the exact colors of
+     * the point.
+     * 
+     * @return a frame source positioned at the first frame, or null if the frames
+     *         are tracked at full resolution
+     * @throws IOException if ffmpeg could not be started
+     */
+    public FrameSource openAnalysisFrames() throws IOException {
+        return openAnalysisFrames(0, -1);
+    }
+
+    /**
+     * Utility function to open a range of frames of the downscaled region of
+     * interest, read in lockstep with openFrames(first, count)
+     * 
+     * @param first the 0-based number of the first frame
+     * @param count the number of frames to read, or -1 to read to the end
+     * @return a frame source positioned at the first frame of the range, or null
+     *         if the frames are tracked at full resolution
+     * @throws IOException if ffmpeg could not be started
+     */
+    public FrameSource openAnalysisFrames(int first, int count) throws IOException {
+        if (analysisScale >= 1) {
+            return null;
+        }
+        int[] size = analysisSize();
+        String filter = "scale=" + size[0] + ":" + size[1] + ":flags=neighbor";
+        if (roi != null) {
+            filter = "crop=" + roi[2] + ":" + roi[3] + ":" + roi[0] + ":" + roi[1] + "," + filter;
+        }
+        return new FfmpegFrameSource(inputPath, size[0], size[1], filter, seekTime(first), count);
+    }
+
+    /**
+     * Utility function to view the region of interest of a full resolution frame
+     * without copying it
+     * 
+     * @param frame the full resolution frame
+     * @return the region of interest sharing the pixels of the frame
+     */
+    public BufferedImage analysisView(BufferedImage frame) {
+        return roi == null ? frame : frame.getSubimage(roi[0], roi[1], roi[2], roi[3]);
+    }
+
+    /**
+     * Utility function to map coordinates tracked in the region of interest back
+     * to full resolution
+     * 
+     * @param coords the coordinates in the analysis frame, or null
+     * @return the coordinates in the video frame, or null if coords is null
+     */
+    public int[] toFull(int[] coords) {
+        return toFull(coords, null);
+    }
+
+    /**
+     * Function to map coordinates tracked in the region of interest back to full
+     * resolution, from the exact centroid they were rounded from when subPixel
+     * is set, so a point tracked downscaled lands on the nearest video pixel
+     * rather than the middle of its analysis pixel
+     * 
+     * @param coords   the coordinates in the analysis frame, or null
+     * @param centroid the exact centroid in the analysis frame, or null
+     * @return the coordinates in the video frame, or null if coords is null
+     */
+    public int[] toFull(int[] coords, double[] centroid) {
+        if (coords == null || (roi == null && analysisScale >= 1)) {
+            return coords;
+        }
+        double cx = subPixel && centroid != null ? centroid[0] : coords[0];
+        double cy = subPixel && centroid != null ? centroid[1] : coords[1];
+        int[] size = analysisSize();
+        int w = roi != null ? roi[2] : width;
+        int h = roi != null ? roi[3] : height;
+        int x = (int) Math.round((cx + 0.5) * w / size[0] - 0.5);
+        int y = (int) Math.round((cy + 0.5) * h / size[1] - 0.5);
+        return new int[] { x + (roi != null ? roi[0] : 0), y + (roi != null ? roi[1] : 0) };
+    }
+
+    /**
+     * Setter function to set the region of interest from two corners, clamped to
+     * the video frame
+     * 
+     * @param x1 the x coordinate of one corner
+     * @param y1 the y coordinate of one corner
+     * @param x2 the x coordinate of the opposite corner
+     * @param y2 the y coordinate of the opposite corner
+     */
+    public void setRoi(int x1, int y1, int x2, int y2) {
+        int lowerX = Math.max(0, Math.min(x1, x2));
+        int lowerY = Math.max(0, Math.min(y1, y2));
+        int upperX = Math.min(width, Math.max(x1, x2));
+        int upperY = Math.min(height, Math.max(y1, y2));
+        roi = upperX > lowerX && upperY > lowerY ? new int[] { lowerX, lowerY, upperX - lowerX, upperY - lowerY }
+                : null;
+    }
+
+    /**
+     * Utility function to decode only the first frame of the input video
+     * 
+     * @return the first frame, or null if it could not be decoded
+     */
+    public BufferedImage firstFrame() {
+        try (FrameSource frames = openFrames()) {
+            BufferedImage frame = frames.createFrame();
+            return frames.read(frame) ? frame : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Utility function to get the path of an intermediate frame in a frames folder
+     * 
+     * @param folder the folder of the intermediate frames
+     * @param index  the 1-based frame number
+     * @return the path of the frame png
+     */
+    public static String framePath(String folder, int index) {
+        return folder + String.format("\\frame_%04d.png", index);
+    }
+
     /**
      * Utility function to convert rgb values into integer rgba representation
      * 
@@ -121,7 +598,9 @@ public class Tracker {
     }
 
     /**
-     * Utility function to find the numeric difference between two colors
+     * Utility function to find the numeric difference between two colors. This is
+     * the reference definition of a match, the search itself uses the equivalent
+     * squared integer test in ColorMatcher.
      * 
      * @param color1
      * @param color2
@@ -150,12 +629,25 @@ public class Tracker {
      */
     public void drawCircle(BufferedImage image, int x, int y) {
         Graphics g = image.getGraphics();
-        g.setColor(new Color(255, 0, 0));
+        g.setColor(OVERLAY);
         g.drawOval(x - 5, y - 5, 10, 10);
         g.drawRect(x - 25, y - 25, 50, 50);
         g.dispose();
     }
 
+    /**
+     * Utility function to mark a frame in which a target could not be found
+     * 
+     * @param image  the image to draw on
+     * @param target the index of the target, used to stack the labels of several targets
+     */
+    public void drawLost(BufferedImage image, int target) {
+        Graphics g = image.getGraphics();
+        g.setColor(OVERLAY);
+        g.drawString("Lost target " + (target + 1), 10, 20 + 15 * target);
+        g.dispose();
+    }
+
     /**
      * Utility function to draw the speed on an image at a specified coordinate
      * 
@@ -164,23 +656,75 @@ public class Tracker {
      * @param counter the particular frame to calculate and draw speed for
      */
     public void drawSpeed(BufferedImage image, int[][] coords, int counter) {
+        drawSpeed(image, counter >= 1 ? coords[counter - 1] : null, coords[counter]);
+    }
+
+    /**
+     * Utility function to draw the speed on an image at a specified coordinate
+     * 
+     * @param image   the image to draw on
+     * @param prev    the coords of the object in the previous frame, or null for the first frame
+     * @param current the coords of the object in the frame to draw speed for
+     */
+    public void drawSpeed(BufferedImage image, int[] prev, int[] current) {
         Graphics g = image.getGraphics();
-        g.setColor(new Color(255, 0, 0));
+        g.setColor(OVERLAY);
 
         double distance = 0;
-        if (counter >= 1) {
-            distance = Math.sqrt(
-                    Math.pow((coords[counter][0] - coords[counter - 1][0]), 2) +
-                            Math.pow((coords[counter][1] - coords[counter - 1][1]), 2));
+        if (prev != null) {
+            double dx = current[0] - prev[0];
+            double dy = current[1] - prev[1];
+            distance = Math.sqrt(dx * dx + dy * dy);
         }
         double time = 1.0 / fps;
         g.drawString("Speed: " + Math.round((distance / time) / ratio / trackWidth) + "tw/s",
-                coords[counter][0] - 25, coords[counter][1] - 40);
+                current[0] - 25, current[1] - 40);
+        g.dispose();
+    }
+
+    /**
+     * Utility function to draw a reference path on an image
+     * 
+     * @param image the image to draw on
+     * @param path  the path to draw
+     */
+    public void drawPath(BufferedImage image, ReferencePath path) {
+        Graphics g = image.getGraphics();
+        g.setColor(OVERLAY);
+        g.drawPolyline(path.drawX, path.drawY, path.size());
         g.dispose();
     }
 
     /**
-     * Utility function to deconstruct an input video into frames using ffmpeg
+     * Utility function to draw the deviation of a point from the reference path
+     * above its speed
+     * 
+     * @param image the image to draw on
+     * @param row   the row measured by PathAnalytics for the point, with a
+     *              negative frame if it was not measured
+     */
+    public void drawDeviation(BufferedImage image, double[] row) {
+        if (row[PathAnalytics.FRAME] < 0) {
+            return;
+        }
+        Graphics g = image.getGraphics();
+        g.setColor(OVERLAY);
+        int x = (int) row[PathAnalytics.X] - 25;
+        int y = (int) row[PathAnalytics.Y];
+        double deviation = row[PathAnalytics.DEVIATION_TW];
+        g.drawString("Deviation: " + String.format("%.2f", Math.abs(deviation)) + "tw"
+                + (deviation > 0 ? " right" : deviation < 0 ? " left" : ""), x, y - 55);
+        if (!Double.isNaN(row[PathAnalytics.HEADING_ERROR])) {
+            g.drawString("Heading error: " + Math.round(row[PathAnalytics.HEADING_ERROR]) + "deg", x, y - 70);
+        }
+        g.drawString("Total deviation: " + String.format("%.2f", row[PathAnalytics.CUMULATIVE]) + "tw*s", x,
+                y - 85);
+        g.dispose();
+    }
+
+    /**
+     * Utility function to deconstruct an input video into frames using ffmpeg.
+     * Only needed in debug mode, tracking streams frames straight from ffmpeg.
      * 
      * @return true if video deconstructed successfully
      */
@@ -217,22 +761,34 @@ public class Tracker {
 
     /**
      * Utility function to reconstruct intermediary frames into a video at the
-     * original fps using ffmpeg
+     * original fps using ffmpeg. Only needed in debug mode, process otherwise
+     * pipes frames straight into the encoder.
      * 
      * @param outputPath the path to save the output video in
      */
     public void reconstruct(String outputPath) {
+        encodeFrames(outputFile(outputPath));
+    }
+
+    /**
+     * Utility function to encode the intermediary frames in imageFolder into a
+     * video file at the original fps using ffmpeg
+     * 
+     * @param videoFile the path of the output video
+     * @return true if the video was encoded successfully
+     */
+    public boolean encodeFrames(String videoFile) {
         String framePattern = imageFolder + "\\frame_%04d.png";
         try {
             Process process = new ProcessBuilder(
                 "ffmpeg",
-                "-framerate", "30",
+                "-framerate", String.valueOf(fps),
                 "-i", framePattern,
                 "-c:v", "libx264",
                 "-crf", "18",
                 "-preset", "slow",
                 "-pix_fmt", "yuv420p",
-                outputPath + "\\output-video.mp4").redirectErrorStream(true).start();
+                videoFile).redirectErrorStream(true).start();
 
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             String line;
@@ -243,6 +799,7 @@ public class Tracker {
             int exitCode = process.waitFor();
             if (exitCode == 0) {
                 System.out.println("Video reconstruction completed successfully.");
+                return true;
             } else {
                 System.out.println(exitCode);
                 System.err.println("Video reconstruction failed.");
@@ -250,6 +807,24 @@ public class Tracker {
         } catch (IOException | InterruptedException e) {
             e.printStackTrace();
         }
+        return false;
+    }
+
+    /**
+     * Utility function to get a scanner for a target color at the current tolerance
+     * and color metric
+     * 
+     * @param target target color to search for
+     * @return a scanner matching the target color
+     */
+    public PixelScanner scannerFor(int target) {
+        PixelScanner current = scanner;
+        if (current == null || current.matcher.target != target || current.matcher.tolerance != tolerance
+                || current.matcher.metric != colorMetric) {
+            current = new PixelScanner(new ColorMatcher(target, tolerance, colorMetric));
+            scanner = current;
+        }
+        return current;
     }
 
     /**
@@ -265,26 +840,52 @@ public class Tracker {
      * @return and array of all the matching coordinates
      */
     public int[] searchPoint(int lowerX, int upperX, int lowerY, int upperY, BufferedImage image, int target) {
-        int sumX = 0;
-        int sumY = 0;
-        int c = 0;
-
-        for (int x = lowerX; x < upperX; x++) {
-            for (int y = lowerY; y < upperY; y++) {
-                int color = image.getRGB(x, y);
-                if (colorDiff(color, target) <= 15) {
-                    sumX += x;
-                    sumY += y;
-                    c += 1;
-                }
-            }
+        long[] sums = new long[3];
+        scannerFor(target).scan(image, lowerX, upperX, lowerY, upperY, sums);
+        return centroid(sums);
+    }
+
+    /**
+     * Utility function to turn the running sums of a search into coordinates,
+     * keeping the exact centroid in lastCentroid
+     * 
+     * @param sums the {sumX, sumY, count} of the matching pixels
+     * @return the centroid of the matching pixels, or {0, 0} if there are none
+     */
+    public int[] centroid(long[] sums) {
+        if (sums[2] == 0) {
+            lastCentroid = null;
+            return new int[] { 0, 0 };
         }
-        return new int[] { (sumX == 0) ? 0 : sumX / c, (sumY == 0) ? 0 : sumY / c };
+        lastCentroid = new double[] { (double) sums[0] / sums[2], (double) sums[1] / sums[2] };
+        return subPixel ? round(lastCentroid) : new int[] { (int) (sums[0] / sums[2]), (int) (sums[1] / sums[2]) };
     }
 
     /**
-     * Utility function to iteratively look for a point in an image using
-     * predicted places the point could be in.
+     * Utility function to take the centroid of a blob as the point, keeping the
+     * exact centroid in lastCentroid
+     * 
+     * @param blob the blob of the point
+     * @return the centroid of the blob
+     */
+    private int[] centroid(Blob blob) {
+        lastCentroid = blob.center();
+        return subPixel ? round(lastCentroid) : blob.centroid();
+    }
+
+    /**
+     * Utility function to round an exact centroid to the nearest pixel
+     * 
+     * @param centroid the {x, y} centroid in fractional pixels
+     * @return the {x, y} pixel
+     */
+    private static int[] round(double[] centroid) {
+        return new int[] { (int) Math.round(centroid[0]), (int) Math.round(centroid[1]) };
+    }
+
+    /**
+     * Utility function to iteratively look for a point in an image, starting from
+     * a window of 1/20th of the image around the prediction
      * 
      * @param target the integer color representation
      * @param image  the image to look through
@@ -293,77 +894,713 @@ public class Tracker {
      * @return an array of all the matching coordinates
      */
     public int[] findPoint(int target, BufferedImage image, int predX, int predY) {
+        return findPoint(target, image, predX, predY, image.getWidth() / 20, image.getHeight() / 20);
+    }
+
+    /**
+     * Utility function to iteratively look for a point in an image using
+     * predicted places the point could be in, starting from a window of the given
+     * size
+     * 
+     * @param target the integer color representation
+     * @param image  the image to look through
+     * @param predX  the predicted X coordinate
+     * @param predY  the predicted Y coordinate
+     * @param initX  the half-width of the first search window
+     * @param initY  the half-height of the first search window
+     * @return an array of all the matching coordinates
+     */
+    public int[] findPoint(int target, BufferedImage image, int predX, int predY, int initX, int initY) {
+        return findPoint(scannerFor(target), image, predX, predY, initX, initY, null);
+    }
+
+    /**
+     * Utility function to iteratively look for a point in an image using
+     * predicted places the point could be in. Each iteration grows the window
+     * around the prediction, but only the pixels that enter or leave the window
+     * are scanned and the running sums are carried over. With useBlobs the
+     * first window holding any match is labeled into blobs instead, and the blob
+     * nearest the prediction is the point.
+     * 
+     * @param scanner the scanner matching the target color
+     * @param image   the image to look through
+     * @param predX   the predicted X coordinate
+     * @param predY   the predicted Y coordinate
+     * @param initX   the half-width of the first search window
+     * @param initY   the half-height of the first search window
+     * @param seed    the {sumX, sumY, count} of the first search window if it has
+     *                already been scanned, or null
+     * @return an array of all the matching coordinates
+     */
+    public int[] findPoint(PixelScanner scanner, BufferedImage image, int predX, int predY, int initX, int initY,
+            long[] seed) {
+        long[] sums = new long[3];
+        long[] scratch = new long[3];
+        long visited = 0;
+        int[] window = { 0, 0, 0, 0 };
+
         int iter = 1;
         int[] prev_coords = { 0, 0 };
+        long prev_count = 0;
         int[] current_coords = { 0, 0 };
         while (iter <= 20) {
-            int rangeX = image.getWidth() / 20;
-            int lowerX = predX - (iter * rangeX);
-            if (lowerX < 0)
-                lowerX = 0;
-            else if (lowerX > image.getWidth())
-                lowerX = image.getWidth() - 1;
-
-            int upperX = predX + (iter * rangeX);
-            if (upperX < 0)
-                upperX = 0;
-            else if (upperX > image.getWidth())
-                upperX = image.getWidth() - 1;
-
-            int rangeY = image.getHeight() / 20;
-            int lowerY = predY - (iter * rangeY);
-            if (lowerY < 0)
-                lowerY = 0;
-            else if (lowerY > image.getHeight())
-                lowerY = image.getHeight() - 1;
-
-            int upperY = predY + (iter * rangeY);
-            if (upperY < 0)
-                upperY = 0;
-            else if (upperY > image.getHeight())
-                upperY = image.getHeight() - 1;
-
-            current_coords = searchPoint(lowerX, upperX, lowerY, upperY, image, target);
-            if (current_coords[0] != 0 && current_coords[1] != 0 && current_coords[0] == prev_coords[0]
+            int[] next = searchWindow(image, predX, predY,
+                    initX + (iter - 1) * (image.getWidth() / 20), initY + (iter - 1) * (image.getHeight() / 20));
+            if (iter == 1 && seed != null) {
+                System.arraycopy(seed, 0, sums, 0, 3);
+            } else {
+                int[] common = intersect(window, next);
+                scratch[0] = scratch[1] = scratch[2] = 0;
+                visited += scanDifference(scanner, image, window, common, scratch);
+                sums[0] -= scratch[0];
+                sums[1] -= scratch[1];
+                sums[2] -= scratch[2];
+                visited += scanDifference(scanner, image, next, common, sums);
+            }
+            window = next;
+
+            if (useBlobs && sums[2] > 0) {
+                lastPixelsVisited = visited;
+                lastIterations = iter;
+                return nearestBlob(scanner, image, window, predX, predY);
+            }
+
+            current_coords = centroid(sums);
+            // A point on row or column 0 has a 0 coordinate, so whether anything matched is taken from the count
+            if (sums[2] > 0 && prev_count > 0 && current_coords[0] == prev_coords[0]
                     && current_coords[1] == prev_coords[1]) {
-                System.out.print(iter + " ");
+                lastPixelsVisited = visited;
+                lastIterations = iter;
+                if (verbose) {
+                    System.out.print(iter + " (" + visited + " px) ");
+                }
                 return current_coords;
             }
             prev_coords = current_coords;
+            prev_count = sums[2];
             iter += 1;
         }
+        lastPixelsVisited = visited;
+        lastIterations = iter - 1;
         throw new IllegalStateException("Cannot find color in frame");
     }
 
     /**
-     * Function to go through each frame and track a uniquely colored point visually
+     * Utility function to find the point as the blob nearest the prediction in a
+     * window holding matching pixels. A blob cut off by the edge of the window is
+     * labeled again in a window around its bounding box, grown by its own size, so
+     * its centroid is taken over the whole blob.
+     * 
+     * @param scanner the scanner matching the target color
+     * @param image   the image to look through
+     * @param window  the window as {lowerX, upperX, lowerY, upperY}
+     * @param predX   the predicted X coordinate
+     * @param predY   the predicted Y coordinate
+     * @return the centroid of the nearest blob
+     */
+    private int[] nearestBlob(PixelScanner scanner, BufferedImage image, int[] window, int predX, int predY) {
+        int x = predX;
+        int y = predY;
+        Blob blob = null;
+        for (int pass = 0; pass < 4; pass++) {
+            Blob found = BlobDetector.nearest(blobDetector.detect(scanner.matcher, image, window, motionMask), x,
+                    y, minBlobArea);
+            lastPixelsVisited += (long) (window[1] - window[0]) * (window[3] - window[2]);
+            lastIterations += 1;
+            if (found == null) {
+                break;
+            }
+            blob = found;
+            if (!clipped(blob, window, image)) {
+                break;
+            }
+            int[] center = blob.centroid();
+            x = center[0];
+            y = center[1];
+            int growX = Math.max(minSearchRadius, blob.maxX - blob.minX + 1);
+            int growY = Math.max(minSearchRadius, blob.maxY - blob.minY + 1);
+            window = new int[] { Math.max(0, blob.minX - growX), Math.min(image.getWidth(), blob.maxX + 1 + growX),
+                    Math.max(0, blob.minY - growY), Math.min(image.getHeight(), blob.maxY + 1 + growY) };
+        }
+        if (blob == null) {
+            throw new IllegalStateException("Cannot find color in frame");
+        }
+        lastBlob = blob;
+        if (verbose) {
+            System.out.print(lastIterations + " (" + lastPixelsVisited + " px, " + blob.area + " px blob) ");
+        }
+        return centroid(blob);
+    }
+
+    /**
+     * Utility function to locate a target in a frame. If the first search window
+     * around the prediction holds no match, the point is re-acquired from the
+     * image pyramid and only refined by findPoint at full resolution. Otherwise,
+     * or if the pyramid finds nothing, findPoint searches around the prediction.
+     * As a last resort the whole frame is scanned in parallel tiles.
+     * 
+     * @param target  the target to look for
+     * @param image   the image to look through
+     * @param pred    the predicted coordinates
+     * @param range   the half-size of the first search window
+     * @param seed    the sums of the first search window if already scanned, or null
+     * @param pyramid the pyramid of the image
+     * @return the coordinates of the target, or null if it is not in the frame
+     */
+    public int[] locate(Target target, BufferedImage image, int[] pred, int[] range, long[] seed,
+            ImagePyramid pyramid) {
+        PixelScanner scanner = target.getScanner();
+        lastBlob = null;
+        lastCentroid = null;
+        long seedPixels = 0;
+        if (seed == null) {
+            int[] window = searchWindow(image, pred[0], pred[1], range[0], range[1]);
+            seed = new long[3];
+            seedPixels = scanMoving(scanner, image, window[0], window[1], window[2], window[3], seed);
+        }
+
+        if (seed[2] == 0 && usePyramid) {
+            int[] candidate = pyramid.acquire(scanner.matcher, pred[0], pred[1]);
+            int[] coords = refine(scanner, image, candidate);
+            if (coords != null) {
+                lastPixelsVisited += seedPixels;
+                return coords;
+            }
+        }
+        try {
+            int[] coords = findPoint(scanner, image, pred[0], pred[1], range[0], range[1], seed);
+            lastPixelsVisited += seedPixels;
+            return coords;
+        } catch (IllegalStateException e) {
+            long visited = lastPixelsVisited + seedPixels + (long) image.getWidth() * image.getHeight();
+            int iterations = lastIterations;
+            lastPixelsVisited = 0;
+            lastIterations = 0;
+            int[] coords = refine(scanner, image, ParallelScan.acquire(scanner, image, pred[0], pred[1]));
+            lastPixelsVisited += visited;
+            lastIterations += iterations;
+            return coords;
+        }
+    }
+
+    /**
+     * Function to follow a point between two full searches. Interpolating takes
+     * the prediction as it is. Verifying labels a small window around the
+     * prediction and returns the centroid of the blob nearest to it, as a full
+     * search would, provided the blob lies wholly inside the window and near
+     * the prediction.
+     * 
+     * @param target the target to follow
+     * @param image  the image to look through
+     * @param pred   the predicted coordinates
+     * @param extent the half-size of the verification window
+     * @param mode   KeyframeSchedule.VERIFY or KeyframeSchedule.INTERPOLATE
+     * @param near   the largest distance from the prediction to the verified point
+     * @return the coordinates of the target, or null if it has to be searched for
+     */
+    public int[] follow(Target target, BufferedImage image, int[] pred, int extent, int mode, double near) {
+        lastIterations = 0;
+        lastPixelsVisited = 0;
+        lastBlob = null;
+        lastCentroid = null;
+        if (pred[0] < 0 || pred[0] >= image.getWidth() || pred[1] < 0 || pred[1] >= image.getHeight()) {
+            return null;
+        }
+        if (mode == KeyframeSchedule.INTERPOLATE) {
+            return pred;
+        }
+        int[] window = { Math.max(0, pred[0] - extent), Math.min(image.getWidth(), pred[0] + extent + 1),
+                Math.max(0, pred[1] - extent), Math.min(image.getHeight(), pred[1] + extent + 1) };
+        Blob blob = BlobDetector.nearest(blobDetector.detect(target.getScanner().matcher, image, window, motionMask),
+                pred[0], pred[1], minBlobArea);
+        lastPixelsVisited = (long) (window[1] - window[0]) * (window[3] - window[2]);
+        lastIterations = 1;
+        lastBlob = blob;
+        if (blob == null || blob.area < minBlobArea || clipped(blob, window, image)) {
+            return null;
+        }
+        int[] coords = centroid(blob);
+        double dx = coords[0] - pred[0];
+        double dy = coords[1] - pred[1];
+        return dx * dx + dy * dy <= near * near ? coords : null;
+    }
+
+    /**
+     * Utility function to check whether a blob touches the edge of a window
+     * inside the image, so part of it may lie outside the window
+     * 
+     * @param blob   the blob found in the window
+     * @param window the window as {lowerX, upperX, lowerY, upperY}
+     * @param image  the image the window lies in
+     * @return true if the blob may continue past the window
+     */
+    private static boolean clipped(Blob blob, int[] window, BufferedImage image) {
+        return (blob.minX == window[0] && window[0] > 0)
+                || (blob.maxX == window[1] - 1 && window[1] < image.getWidth())
+                || (blob.minY == window[2] && window[2] > 0)
+                || (blob.maxY == window[3] - 1 && window[3] < image.getHeight());
+    }
+
+    /**
+     * Utility function to confirm a re-acquisition candidate at full resolution
+     * 
+     * @param scanner   the scanner matching the target color
+     * @param image     the image to look through
+     * @param candidate the {x, y, radius} of the candidate region, or null
+     * @return the coordinates of the target, or null if the candidate does not hold up
+     */
+    private int[] refine(PixelScanner scanner, BufferedImage image, int[] candidate) {
+        if (candidate == null) {
+            return null;
+        }
+        if (motionMask != null) {
+            // A re-acquired point may have stopped, so its tiles are searched whether they changed or not
+            motionMask.keep(candidate[0], candidate[1], 2 * candidate[2]);
+        }
+        try {
+            return findPoint(scanner, image, candidate[0], candidate[1], candidate[2], candidate[2], null);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Utility function to get the search window around a prediction, clamped to
+     * the image
+     * 
+     * @param image   the image to search through
+     * @param predX   the predicted X coordinate
+     * @param predY   the predicted Y coordinate
+     * @param extentX the half-width of the window
+     * @param extentY the half-height of the window
+     * @return the window as {lowerX, upperX, lowerY, upperY}
+     */
+    public static int[] searchWindow(BufferedImage image, int predX, int predY, int extentX, int extentY) {
+        int lowerX = predX - extentX;
+        if (lowerX < 0)
+            lowerX = 0;
+        else if (lowerX > image.getWidth())
+            lowerX = image.getWidth() - 1;
+
+        int upperX = predX + extentX;
+        if (upperX < 0)
+            upperX = 0;
+        else if (upperX > image.getWidth())
+            upperX = image.getWidth() - 1;
+
+        int lowerY = predY - extentY;
+        if (lowerY < 0)
+            lowerY = 0;
+        else if (lowerY > image.getHeight())
+            lowerY = image.getHeight() - 1;
+
+        int upperY = predY + extentY;
+        if (upperY < 0)
+            upperY = 0;
+        else if (upperY > image.getHeight())
+            upperY = image.getHeight() - 1;
+
+        return new int[] { lowerX, upperX, lowerY, upperY };
+    }
+
+    /**
+     * Utility function to scan the first search windows of several targets,
+     * reading the pixels shared by overlapping windows only once. Targets whose
+     * window overlaps no other window are left to findPoint. The number of pixels
+     * read is left in lastPixelsVisited.
+     * 
+     * @param image   the image to search through
+     * @param targets the targets being tracked
+     * @param windows the first search window of each target
+     * @return the {sumX, sumY, count} of each shared window, or null for targets
+     *         that were not scanned
+     */
+    public long[][] scanShared(BufferedImage image, List<Target> targets, int[][] windows) {
+        int n = targets.size();
+        int[] group = new int[n];
+        for (int i = 0; i < n; i++) {
+            group[i] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int[] common = intersect(windows[i], windows[j]);
+                if (common[0] < common[1] && common[2] < common[3]) {
+                    group[find(group, i)] = find(group, j);
+                }
+            }
+        }
+
+        long[][] seeds = new long[n][];
+        lastPixelsVisited = 0;
+        for (int root = 0; root < n; root++) {
+            List<Integer> members = new ArrayList<>();
+            int[] bounds = { Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE };
+            for (int i = 0; i < n; i++) {
+                if (find(group, i) == root) {
+                    members.add(i);
+                    bounds[0] = Math.min(bounds[0], windows[i][0]);
+                    bounds[1] = Math.max(bounds[1], windows[i][1]);
+                    bounds[2] = Math.min(bounds[2], windows[i][2]);
+                    bounds[3] = Math.max(bounds[3], windows[i][3]);
+                }
+            }
+            if (members.size() < 2 || bounds[0] >= bounds[1]) {
+                continue;
+            }
+
+            int[] row = new int[bounds[1] - bounds[0]];
+            for (int i : members) {
+                seeds[i] = new long[3];
+            }
+            for (int y = bounds[2]; y < bounds[3]; y++) {
+                int lowerX = Integer.MAX_VALUE;
+                int upperX = Integer.MIN_VALUE;
+                for (int i : members) {
+                    if (y >= windows[i][2] && y < windows[i][3] && windows[i][0] < windows[i][1]) {
+                        lowerX = Math.min(lowerX, windows[i][0]);
+                        upperX = Math.max(upperX, windows[i][1]);
+                    }
+                }
+                if (lowerX >= upperX) {
+                    continue;
+                }
+                PixelScanner.readRow(image, y, lowerX, upperX, row);
+                lastPixelsVisited += upperX - lowerX;
+                for (int i : members) {
+                    if (y >= windows[i][2] && y < windows[i][3]) {
+                        targets.get(i).getScanner().scanRow(row, lowerX, windows[i][0], windows[i][1], y, seeds[i]);
+                    }
+                }
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Utility function to find the representative of a group in a union-find
+     * array
+     * 
+     * @param parent the parent of every element
+     * @param i      the element to look up
+     * @return the root of the group of i
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Utility function to intersect two search windows
+     * 
+     * @param a the first window as {lowerX, upperX, lowerY, upperY}
+     * @param b the second window as {lowerX, upperX, lowerY, upperY}
+     * @return the intersection, which may be empty
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        return new int[] { Math.max(a[0], b[0]), Math.min(a[1], b[1]), Math.max(a[2], b[2]), Math.min(a[3], b[3]) };
+    }
+
+    /**
+     * Utility function to scan the part of a window that lies outside an inner
+     * window, as up to four bands around it
+     * 
+     * @param scanner the scanner to add matching pixels with
+     * @param image   the image to scan
+     * @param outer   the window to scan as {lowerX, upperX, lowerY, upperY}
+     * @param inner   the window to skip, contained in outer
+     * @param sums    running {sumX, sumY, count} of the matching pixels
+     * @return the number of pixels scanned
+     */
+    public long scanDifference(PixelScanner scanner, BufferedImage image, int[] outer, int[] inner, long[] sums) {
+        if (outer[0] >= outer[1] || outer[2] >= outer[3]) {
+            return 0;
+        }
+        if (inner[0] >= inner[1] || inner[2] >= inner[3]) {
+            return scanMoving(scanner, image, outer[0], outer[1], outer[2], outer[3], sums);
+        }
+        // Top and bottom bands span the full width, left and right bands fill the rows in between
+        return scanMoving(scanner, image, outer[0], outer[1], outer[2], inner[2], sums)
+                + scanMoving(scanner, image, outer[0], outer[1], inner[3], outer[3], sums)
+                + scanMoving(scanner, image, outer[0], inner[0], inner[2], inner[3], sums)
+                + scanMoving(scanner, image, inner[1], outer[1], inner[2], inner[3], sums);
+    }
+
+    /**
+     * Utility function to scan a window, skipping the tiles the motion mask saw
+     * no change in. Neighbouring changed tiles of a tile row are scanned as one
+     * rectangle.
+     * 
+     * @param scanner the scanner to add matching pixels with
+     * @param image   the image to scan
+     * @param lowerX  lower x bound (inclusive)
+     * @param upperX  upper x bound (exclusive)
+     * @param lowerY  lower y bound (inclusive)
+     * @param upperY  upper y bound (exclusive)
+     * @param sums    running {sumX, sumY, count} of the matching pixels
+     * @return the number of pixels scanned
+     */
+    public long scanMoving(PixelScanner scanner, BufferedImage image, int lowerX, int upperX, int lowerY, int upperY,
+            long[] sums) {
+        if (lowerX >= upperX || lowerY >= upperY) {
+            return 0;
+        }
+        MotionMask mask = motionMask;
+        if (mask == null) {
+            scanner.scan(image, lowerX, upperX, lowerY, upperY, sums);
+            return (long) (upperX - lowerX) * (upperY - lowerY);
+        }
+        int tile = MotionMask.TILE;
+        long scanned = 0;
+        for (int ty = lowerY / tile; ty * tile < upperY; ty++) {
+            int y0 = Math.max(lowerY, ty * tile);
+            int y1 = Math.min(upperY, (ty + 1) * tile);
+            int tx = lowerX / tile;
+            while (tx * tile < upperX) {
+                if (!mask.changed(tx, ty)) {
+                    tx += 1;
+                    continue;
+                }
+                int x0 = Math.max(lowerX, tx * tile);
+                while (tx * tile < upperX && mask.changed(tx, ty)) {
+                    tx += 1;
+                }
+                int x1 = Math.min(upperX, tx * tile);
+                scanner.scan(image, x0, x1, y0, y1, sums);
+                scanned += (long) (x1 - x0) * (y1 - y0);
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Function to go through each frame, track a uniquely colored point visually
+     * and hand the annotated frame to a sink as soon as it is tracked
      * 
      * @param target the integer representation of the target color
+     * @param sink   the destination of the annotated frames
      */
-    public void trackPoint(int target) {
-        File images = new File(imageFolder);
-        int[][] coords;
+    public void trackPoint(int target, FrameSink sink) {
+        trackPoint(List.of(new Target(target, tolerance, colorMetric, predictor)), sink);
+    }
+
+    /**
+     * Function to go through each frame once, track several uniquely colored
+     * points visually and hand the annotated frame to a sink as soon as it is
+     * tracked. Decoding, tracking, annotating and encoding run as overlapping
+     * pipeline stages. The coordinates of every frame are stored in each target.
+     * 
+     * @param targets the targets to track
+     * @param sink    the destination of the annotated frames
+     * @return true if every frame was tracked and written
+     */
+    public boolean trackPoint(List<Target> targets, FrameSink sink) {
+        return runPipeline(targets, sink, false);
+    }
+
+    /**
+     * Function to go through each frame once and draw the coordinates already
+     * held by the targets, e.g. a cached track, without tracking again
+     * 
+     * @param targets the targets whose coordinates to draw
+     * @param sink    the destination of the annotated frames
+     * @return true if every frame was drawn and written
+     */
+    public boolean render(List<Target> targets, FrameSink sink) {
+        return runPipeline(targets, sink, true);
+    }
+
+    /**
+     * Utility function to open the frames of the input video and run the pipeline
+     * over them
+     * 
+     * @param targets the targets to track or draw
+     * @param sink    the destination of the annotated frames
+     * @param replay  true to draw the coordinates held by the targets
+     * @return true if every frame was processed and written
+     */
+    private boolean runPipeline(List<Target> targets, FrameSink sink, boolean replay) {
+        FrameSource frames = null;
         try {
-            int length = images.listFiles().length;
-            coords = new int[length][2];
-            int counter = 0;
-            for (File file : images.listFiles()) {
-                BufferedImage image = ImageIO.read(file);
-                int[] pred_coords = { 0, 0 };
-                if (counter >= 2) {
-                    pred_coords = predictPoint(coords[counter - 1], coords[counter - 2]);
+            frames = openFrames();
+            FrameSource analysis = replay ? null : openAnalysisFrames();
+            return runPipeline(targets, frames, analysis, sink, replay);
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                if (frames != null) {
+                    frames.close();
+                }
+            } catch (IOException closeError) {
+                closeError.printStackTrace();
+            }
+            if (sink != null) {
+                sink.abort();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Function to track several uniquely colored points through the frames of a
+     * source. Both the source and the sink are closed when tracking ends, and the
+     * sink is aborted instead if tracking failed.
+     * 
+     * @param targets the targets to track
+     * @param frames  the source of the frames
+     * @param sink    the destination of the annotated frames
+     * @return true if every frame was tracked and written
+     */
+    public boolean trackPoint(List<Target> targets, FrameSource frames, FrameSink sink) {
+        return runPipeline(targets, frames, null, sink, false);
+    }
+
+    /**
+     * Utility function to run the pipeline over the frames of a source. Both the
+     * source and the sink are closed when it ends, except that the sink is
+     * aborted if the pipeline failed or the run was cancelled.
+     * 
+     * @param targets the targets to track or draw
+     * @param frames   the source of the frames
+     * @param analysis the source of the downscaled region of interest, read in
+     *                 lockstep with frames, or null to track in frames
+     * @param sink     the destination of the annotated frames
+     * @param replay   true to draw the coordinates held by the targets
+     * @return true if every frame was processed and written
+     */
+    private boolean runPipeline(List<Target> targets, FrameSource frames, FrameSource analysis, FrameSink sink,
+            boolean replay) {
+        try (frames; analysis) {
+            try {
+                TrackingPipeline pipeline = new TrackingPipeline(this, targets, frames, sink);
+                pipeline.analysisSource = analysis;
+                pipeline.replay = replay;
+                pipeline.checkpoint = replay ? null : checkpoint;
+                pipeline.run();
+            } catch (Exception e) {
+                if (sink != null) {
+                    sink.abort();
+                }
+                throw e;
+            }
+            if (isCancelled()) {
+                if (sink != null) {
+                    sink.abort();
                 }
-                coords[counter] = findPoint(target, image, pred_coords[0], pred_coords[1]);
-                drawCircle(image, coords[counter][0], coords[counter][1]);
-                drawSpeed(image, coords, counter);
-                ImageIO.write(image, "png", file);
-                System.out.println(++counter + " out of " + length);
+                return false;
+            }
+            if (sink != null) {
+                sink.close();
             }
+            return true;
         } catch (Exception e) {
+            if (!isCancelled()) {
+                e.printStackTrace();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Function to track the targets through a range of frames without drawing or
+     * encoding them
+     * 
+     * @param targets the targets to track
+     * @param first   the 0-based number of the first frame
+     * @param count   the number of frames to track, or -1 to track to the end
+     * @param resume  true to continue from the coordinates and motion state the
+     *                targets already hold, false to start them over
+     * @return true if every frame of the range was tracked
+     */
+    public boolean trackRange(List<Target> targets, int first, int count, boolean resume) {
+        FrameSource frames;
+        try {
+            frames = openFrames(first, count);
+        } catch (IOException e) {
             e.printStackTrace();
+            return false;
+        }
+        try (frames; FrameSource analysis = openAnalysisFrames(first, count)) {
+            TrackingPipeline pipeline = new TrackingPipeline(this, targets, frames, null);
+            pipeline.analysisSource = analysis;
+            pipeline.resume = resume;
+            pipeline.checkpoint = checkpoint;
+            // Nothing is drawn, so a few buffers keep the decoder ahead of the tracker
+            pipeline.annotateThreads = 1;
+            pipeline.bufferCount = 3;
+            pipeline.run();
+            return true;
+        } catch (Exception e) {
+            if (!isCancelled()) {
+                e.printStackTrace();
+            }
+            return false;
         }
     }
 
+    /**
+     * Utility function to check whether the run in progress has been cancelled
+     * 
+     * @return true if the cancellation check says so
+     */
+    public boolean isCancelled() {
+        BooleanSupplier check = cancelled;
+        return check != null && check.getAsBoolean();
+    }
+
+    /**
+     * Utility function to create a tracker for the same video with the same
+     * search and drawing settings, to track part of the video on another thread.
+     * It shares the frame store and the cancellation check but not the scanners,
+     * and neither logs nor caches.
+     * 
+     * @return a new tracker
+     */
+    public Tracker worker() {
+        Tracker worker = new Tracker(inputPath, fps, width, height, frameCount);
+        worker.imageFolder = imageFolder;
+        worker.ratio = ratio;
+        worker.trackWidth = trackWidth;
+        worker.color = color;
+        worker.tolerance = tolerance;
+        worker.colorMetric = colorMetric;
+        worker.predictor = predictor.fresh();
+        worker.searchSigmas = searchSigmas;
+        worker.minSearchRadius = minSearchRadius;
+        worker.usePyramid = usePyramid;
+        worker.useBlobs = useBlobs;
+        worker.minBlobArea = minBlobArea;
+        worker.useMotionMask = useMotionMask;
+        worker.maxStride = maxStride;
+        worker.subPixel = subPixel;
+        worker.frameMemory = frameMemory;
+        worker.roi = roi;
+        worker.analysisScale = analysisScale;
+        worker.frameStore = frameStore;
+        worker.frameStoreFolder = frameStoreFolder;
+        worker.debugFrames = debugFrames;
+        worker.cancelled = cancelled;
+        worker.verbose = false;
+        worker.useCache = false;
+        return worker;
+    }
+
+    /**
+     * Function to go through each frame and track a uniquely colored point
+     * visually, writing the annotated frames as PNGs into imageFolder
+     * 
+     * @param target the integer representation of the target color
+     */
+    public void trackPoint(int target) {
+        if (!debugFrames) {
+            flushFrames();
+            new File(imageFolder).mkdirs();
+        }
+        trackPoint(target, new ImageFolderSink(imageFolder));
+    }
+
     /**
      * Overloaded function to track point using this.color
      */
@@ -371,6 +1608,146 @@ public class Tracker {
         trackPoint(this.color);
     }
 
+    /**
+     * Function to track the targets, or this.color if there are none, and save the
+     * annotated video into a directory
+     * 
+     * @param outputPath the directory to save the output video in
+     * @return true if the video was processed successfully
+     * @throws IOException if the encoder could not be started
+     */
+    public boolean process(String outputPath) throws IOException {
+        return processTo(outputFile(outputPath));
+    }
+
+    /**
+     * Function to track the targets, or this.color if there are none, and save the
+     * annotated video to a file. Frames are piped straight into the encoder unless
+     * debugFrames is set, in which case they go through PNGs in imageFolder and
+     * reconstruct. If useCache is set and the same video was tracked with the same
+     * targets and search parameters before, the cached track is only re-drawn.
+     * With more than one segment, the video is tracked in parallel segments first
+     * and the stitched track is drawn in a second pass. A single pass is
+     * checkpointed every checkpointInterval frames, whether it uses the cache or
+     * not, and a run into the same output that finds the checkpoint of an
+     * unfinished run only tracks the frames after it before drawing the whole
+     * track. With a reference path, the deviation of
+     * every frame is written next to the video as .path.csv.
+     * 
+     * @param videoFile the path of the output video
+     * @return true if the video was processed successfully
+     * @throws IOException if the encoder could not be started
+     */
+    public boolean processTo(String videoFile) throws IOException {
+        List<Target> run = targets.isEmpty() ? List.of(new Target(color, tolerance, colorMetric, predictor))
+                : targets;
+        TrackCache cache = new TrackCache(cacheFolder);
+        String key = useCache || (checkpointInterval > 0 && !debugFrames) ? cacheKey(run) : null;
+        boolean cached = useCache && key != null && cache.load(key, run);
+        if (cached && verbose) {
+            System.out.println("Drawing cached track " + key);
+        }
+        boolean replay = cached;
+        if (!replay && segments > 1 && !debugFrames) {
+            replay = new SegmentTracker(this).track(run, segments, segmentOverlap);
+            if (isCancelled()) {
+                return false;
+            }
+        }
+        checkpoint = !replay && key != null && checkpointInterval > 0 && !debugFrames
+                ? new TrackCheckpoint(cacheFolder, key, videoFile)
+                : null;
+        try {
+            int restored = checkpoint != null ? checkpoint.load(run) : 0;
+            if (restored > 0) {
+                if (verbose) {
+                    System.out.println("Resuming from the checkpoint at frame " + restored);
+                }
+                // Only the rest of the video is tracked, then the whole track is drawn
+                if (!trackRange(run, restored, -1, true)) {
+                    return false;
+                }
+                replay = true;
+            }
+
+            boolean ok;
+            if (debugFrames) {
+                ok = runPipeline(run, new ImageFolderSink(imageFolder), replay) && encodeFrames(videoFile);
+            } else {
+                ok = runPipeline(run, new EncoderSink(videoFile, width, height, fps), replay);
+            }
+            if (ok && useCache && key != null && !cached) {
+                cache.save(key, run);
+            }
+            if (ok && checkpoint != null) {
+                checkpoint.delete();
+            }
+            if (ok && pathAnalytics != null) {
+                pathAnalytics.writeCSV(videoFile + ".path.csv");
+            }
+            return ok;
+        } finally {
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * Utility function to get the key of the cached track of the input video
+     * 
+     * @param targets the targets to track
+     * @return the cache key, or null if the video cannot be hashed
+     */
+    public String cacheKey(List<Target> targets) {
+        if (videoHash == null) {
+            try {
+                videoHash = TrackCache.hashFile(inputPath);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return TrackCache.key(videoHash, this, targets);
+    }
+
+    /**
+     * Utility function to get the path of the output video in a directory
+     * 
+     * @param outputPath the directory to save the output video in
+     * @return the path of the output video
+     */
+    public static String outputFile(String outputPath) {
+        return new File(outputPath, "output-video.mp4").getPath();
+    }
+
+    /**
+     * Utility function to size the first search window from the uncertainty of
+     * the predictor. Without an uncertainty estimate the window is 1/20th of the
+     * image, as in findPoint.
+     * 
+     * @param image the image to search through
+     * @return the {half-width, half-height} of the first search window
+     */
+    public int[] searchRange(BufferedImage image) {
+        return searchRange(predictor, image);
+    }
+
+    /**
+     * Utility function to size the first search window from the uncertainty of a
+     * predictor
+     * 
+     * @param predictor the motion model of the point
+     * @param image     the image to search through
+     * @return the {half-width, half-height} of the first search window
+     */
+    public int[] searchRange(MotionPredictor predictor, BufferedImage image) {
+        double[] sigma = predictor.uncertainty();
+        if (sigma == null) {
+            return new int[] { image.getWidth() / 20, image.getHeight() / 20 };
+        }
+        return new int[] { Math.max(minSearchRadius, (int) Math.ceil(searchSigmas * sigma[0])),
+                Math.max(minSearchRadius, (int) Math.ceil(searchSigmas * sigma[1])) };
+    }
+
     /**
      * Utility function to predict the position of the point in the
      * next frame based on velocity of point.
@@ -0,0 +1,463 @@
+package com.projects.pointtracker;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Staged pipeline that overlaps decoding, tracking, annotating and encoding of
+ * frames. Decoding, tracking and encoding each run on their own thread, while
+ * annotation runs on a pool. Tracking stays sequential because every prediction
+ * needs the previous coordinates. Stages are joined by bounded queues and frame
+ * buffers are recycled through a fixed pool, sized to stay within the frame
+ * memory of the tracker. Points are tracked in the region of interest of each
+ * frame, optionally downscaled by a second source, and mapped back to full
+ * resolution for drawing. In replay mode the coordinates
+ * already held by the targets are drawn instead of tracking the frames again.
+ * Without a sink the frames are only tracked, as for the segments of a video
+ * tracked in parallel. With a reference path, the deviation of every point is
+ * measured in order by the track stage and drawn with the other overlays.
+ */
+public class TrackingPipeline {
+
+    // Marks the end of the video in the stage queues
+    private static final Frame END = new Frame(null);
+
+    // Tracker providing the search, prediction and drawing functions
+    private final Tracker tracker;
+
+    // Targets tracked in every frame
+    private final List<Target> targets;
+
+    // Source of the decoded frames
+    private final FrameSource source;
+
+    // Destination of the annotated frames
+    private final FrameSink sink;
+
+    // Number of threads drawing overlays in parallel
+    public int annotateThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 3);
+
+    // Number of frame buffers in flight, which bounds every queue in the pipeline
+    public int bufferCount = annotateThreads + 4;
+
+    // Source of the downscaled region of interest, read in lockstep with the source, or null
+    public FrameSource analysisSource;
+
+    // Whether to draw the coordinates already held by the targets instead of tracking
+    public boolean replay = false;
+
+    // Whether to continue from the coordinates and motion state the targets already hold instead of resetting them
+    public boolean resume = false;
+
+    // Deviation from the reference path of the tracker, measured when frames are drawn, or null
+    private PathAnalytics analytics;
+
+    // Frames in which each point is fully searched, or null to search every frame
+    private KeyframeSchedule schedule;
+
+    // Checkpoint the track is appended to every tracker.checkpointInterval frames, or null
+    public TrackCheckpoint checkpoint;
+
+    // Downsampled levels of the frame being tracked, for re-acquiring lost points
+    private final ImagePyramid pyramid = new ImagePyramid();
+
+    // First failure of any stage
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    // Stage threads, interrupted when any stage fails
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    // Number of frames read by the track stage
+    private volatile int frames;
+
+    // Counts down as stages finish, released at once when any stage fails
+    private final CountDownLatch done = new CountDownLatch(3);
+
+    // Receiver of the per-frame timings
+    private final Metrics metrics;
+
+    // Whether to read the clock around each stage, false when metrics are off
+    private final boolean timed;
+
+    /**
+     * Constructor to create a pipeline for a single run
+     * 
+     * @param tracker the tracker providing search, prediction and drawing
+     * @param targets the targets to track in every frame
+     * @param source  the source of the decoded frames
+     * @param sink    the destination of the annotated frames, or null to only
+     *                track the frames without drawing or writing them
+     */
+    public TrackingPipeline(Tracker tracker, List<Target> targets, FrameSource source, FrameSink sink) {
+        this.tracker = tracker;
+        this.targets = targets;
+        this.source = source;
+        this.sink = sink;
+        this.metrics = tracker.metrics;
+        this.timed = metrics != Metrics.NOOP;
+    }
+
+    /**
+     * Function to run all stages until the source is exhausted. The tracked
+     * coordinates are appended to the targets, unless replaying them.
+     * 
+     * @return the number of frames processed
+     * @throws Exception the first exception thrown by any stage
+     */
+    public int run() throws Exception {
+        analytics = tracker.path != null && sink != null ? new PathAnalytics(tracker, targets.size()) : null;
+        tracker.pathAnalytics = analytics;
+        int buffers = buffers();
+        BlockingQueue<Frame> free = new ArrayBlockingQueue<>(buffers);
+        BlockingQueue<Frame> decoded = new ArrayBlockingQueue<>(buffers + 1);
+        BlockingQueue<Future<Frame>> annotated = new ArrayBlockingQueue<>(buffers + 1);
+        for (int i = 0; i < buffers; i++) {
+            Frame frame = new Frame(source.createFrame());
+            frame.analysis = analysisSource != null ? analysisSource.createFrame() : tracker.analysisView(frame.image);
+            frame.analytics = analytics != null ? new double[targets.size()][PathAnalytics.COLUMNS.length] : null;
+            free.add(frame);
+        }
+
+        if (!replay && !resume) {
+            for (Target target : targets) {
+                target.reset();
+            }
+        }
+        tracker.motionMask = tracker.useMotionMask && !replay ? new MotionMask() : null;
+        schedule = tracker.maxStride > 1 && !replay ? new KeyframeSchedule(targets.size(), tracker.maxStride) : null;
+        ExecutorService annotators = Executors.newFixedThreadPool(annotateThreads, Threads.CPU);
+        metrics.start();
+        try {
+            start("decode", Threads.IO, () -> decode(free, decoded));
+            start("track", Threads.CPU, () -> track(decoded, annotated, annotators));
+            start("encode", Threads.IO, () -> encode(annotated, free));
+            // A failed run may leave the decoder blocked in a pipe read until the
+            // caller closes the source, so wait on the latch rather than joining
+            done.await();
+        } finally {
+            annotators.shutdownNow();
+            metrics.finish();
+        }
+
+        if (schedule != null && tracker.verbose) {
+            System.out.println("Followed points " + schedule.verified + " times with a verification window and "
+                    + schedule.interpolated + " times from the prediction alone");
+        }
+        Throwable t = failure.get();
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        } else if (t != null) {
+            throw new ExecutionException(t);
+        }
+        return frames;
+    }
+
+    /**
+     * Utility function to get the number of frame buffers to put in flight,
+     * fewer than bufferCount if that many would hold more than
+     * tracker.frameMemory bytes, as with 8K frames of about 100 MB each. Two
+     * buffers are always kept so decoding overlaps tracking.
+     * 
+     * @return the number of frame buffers
+     */
+    private int buffers() {
+        long bytes = 3L * source.getWidth() * source.getHeight();
+        if (analysisSource != null) {
+            bytes += 3L * analysisSource.getWidth() * analysisSource.getHeight();
+        }
+        if (tracker.frameMemory <= 0 || bytes * bufferCount <= tracker.frameMemory) {
+            return bufferCount;
+        }
+        int buffers = (int) Math.max(2, tracker.frameMemory / bytes);
+        if (tracker.verbose) {
+            System.out.println("Holding " + buffers + " frames of " + (bytes >> 20) + " MB in flight");
+        }
+        return buffers;
+    }
+
+    /**
+     * Decode stage: fill free buffers from the source in playback order
+     */
+    private void decode(BlockingQueue<Frame> free, BlockingQueue<Frame> decoded) throws Exception {
+        int index = 0;
+        while (true) {
+            Frame frame = free.take();
+            long start = timed ? System.nanoTime() : 0;
+            if (!source.read(frame.image)) {
+                decoded.put(END);
+                return;
+            }
+            if (analysisSource != null && !analysisSource.read(frame.analysis)) {
+                throw new IOException("Region of interest stream ended at frame " + (index + 1));
+            }
+            frame.decodeNanos = timed ? System.nanoTime() - start : 0;
+            frame.index = index++;
+            decoded.put(frame);
+        }
+    }
+
+    /**
+     * Track stage: locate the targets in each frame in order and hand the frame to
+     * the annotation pool
+     */
+    private void track(BlockingQueue<Frame> decoded, BlockingQueue<Future<Frame>> annotated,
+            ExecutorService annotators) throws Exception {
+        int n = targets.size();
+        while (true) {
+            Frame frame = decoded.take();
+            if (frame == END) {
+                annotated.put(CompletableFuture.completedFuture(END));
+                return;
+            }
+            if (tracker.isCancelled()) {
+                throw new InterruptedIOException("Tracking cancelled at frame " + (frame.index + 1));
+            }
+            long start = timed ? System.nanoTime() : 0;
+            frame.iterations = 0;
+            frame.pixels = 0;
+            frames = frame.index + 1;
+            if (replay) {
+                replayFrame(frame, n);
+                annotated.put(annotators.submit(() -> annotate(frame, n)));
+                continue;
+            }
+
+            BufferedImage image = frame.analysis;
+            int[][] preds = new int[n][];
+            int[][] ranges = new int[n][];
+            int[][] windows = new int[n][];
+            for (int i = 0; i < n; i++) {
+                MotionPredictor predictor = targets.get(i).predictor;
+                preds[i] = predictor.predict();
+                ranges[i] = tracker.searchRange(predictor, image);
+                windows[i] = Tracker.searchWindow(image, preds[i][0], preds[i][1], ranges[i][0], ranges[i][1]);
+            }
+            pyramid.reset(image);
+            MotionMask mask = tracker.motionMask;
+            if (mask != null) {
+                mask.next(image);
+            }
+            long[][] seeds = new long[n][];
+            // Shared windows are scanned whole, so with a motion mask or keyframes every target scans its own
+            if (n > 1 && mask == null && schedule == null) {
+                seeds = tracker.scanShared(image, targets, windows);
+                frame.pixels += tracker.lastPixelsVisited;
+            }
+
+            frame.coords = new int[n][];
+            frame.prevCoords = frame.index >= 1 || resume ? new int[n][] : null;
+            for (int i = 0; i < n; i++) {
+                Target target = targets.get(i);
+                if (mask != null) {
+                    mask.keep(preds[i][0], preds[i][1]);
+                }
+                int mode = schedule != null ? schedule.mode(i) : KeyframeSchedule.FULL;
+                int[] located = null;
+                if (mode != KeyframeSchedule.FULL) {
+                    located = tracker.follow(target, image, preds[i], schedule.window(i), mode,
+                            schedule.verifyRadius);
+                    if (located != null) {
+                        schedule.followed(i, mode, tracker.lastBlob);
+                    } else {
+                        frame.pixels += tracker.lastPixelsVisited;
+                        schedule.missed(i, tracker.lastBlob);
+                    }
+                }
+                if (located == null) {
+                    located = tracker.locate(target, image, preds[i], ranges[i], seeds[i], pyramid);
+                    if (schedule != null) {
+                        schedule.searched(i, preds[i], located, tracker.lastBlob);
+                    }
+                }
+                frame.coords[i] = tracker.toFull(located, tracker.lastCentroid);
+                frame.iterations += tracker.lastIterations;
+                frame.pixels += tracker.lastPixelsVisited;
+                if (frame.prevCoords != null && !target.coords.isEmpty()) {
+                    frame.prevCoords[i] = target.coords.get(target.coords.size() - 1);
+                }
+                target.coords.add(frame.coords[i]);
+                if (located != null) {
+                    target.predictor.update(located);
+                } else {
+                    // Start the motion model over once the point turns up again
+                    target.predictor.reset();
+                    target.lost += 1;
+                    if (tracker.verbose) {
+                        System.out.print("lost ");
+                    }
+                }
+            }
+
+            if (mask != null) {
+                frame.pixels += mask.pixelsRead;
+            }
+            measure(frame, n);
+            checkpoint();
+            frame.searchNanos = timed ? System.nanoTime() - start : 0;
+
+            annotated.put(sink == null ? CompletableFuture.completedFuture(frame)
+                    : annotators.submit(() -> annotate(frame, n)));
+        }
+    }
+
+    /**
+     * Utility function to take the coordinates of a frame from the targets when
+     * replaying. Frames past the end of the stored track count as lost.
+     */
+    private void replayFrame(Frame frame, int n) {
+        long start = timed ? System.nanoTime() : 0;
+        frame.coords = new int[n][];
+        frame.prevCoords = frame.index >= 1 ? new int[n][] : null;
+        for (int i = 0; i < n; i++) {
+            List<int[]> coords = targets.get(i).coords;
+            frame.coords[i] = frame.index < coords.size() ? coords.get(frame.index) : null;
+            if (frame.prevCoords != null && frame.index - 1 < coords.size()) {
+                frame.prevCoords[i] = coords.get(frame.index - 1);
+            }
+        }
+        measure(frame, n);
+        frame.searchNanos = timed ? System.nanoTime() - start : 0;
+    }
+
+    /**
+     * Utility function to append the track to the checkpoint when another
+     * interval of frames has been tracked. A checkpoint that cannot be written
+     * is given up on rather than failing the run.
+     */
+    private void checkpoint() {
+        if (checkpoint == null || targets.isEmpty() || tracker.checkpointInterval <= 0
+                || targets.get(0).coords.size() % tracker.checkpointInterval != 0) {
+            return;
+        }
+        try {
+            checkpoint.append(targets);
+        } catch (IOException e) {
+            e.printStackTrace();
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * Utility function to measure the deviation of every target of a frame from
+     * the reference path. It runs in the track stage so the cumulative
+     * deviation adds up in frame order.
+     */
+    private void measure(Frame frame, int n) {
+        if (analytics == null) {
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            int[] prev = frame.prevCoords == null ? null : frame.prevCoords[i];
+            if (!analytics.measure(frame.index, i, prev, frame.coords[i], frame.analytics[i])) {
+                frame.analytics[i][PathAnalytics.FRAME] = -1;
+            }
+        }
+    }
+
+    /**
+     * Annotate task: draw the overlays of every target onto the frame
+     */
+    private Frame annotate(Frame frame, int n) {
+        long start = timed ? System.nanoTime() : 0;
+        if (analytics != null) {
+            tracker.drawPath(frame.image, analytics.path);
+        }
+        for (int i = 0; i < n; i++) {
+            if (frame.coords[i] == null) {
+                tracker.drawLost(frame.image, i);
+                continue;
+            }
+            tracker.drawCircle(frame.image, frame.coords[i][0], frame.coords[i][1]);
+            tracker.drawSpeed(frame.image, frame.prevCoords == null ? null : frame.prevCoords[i], frame.coords[i]);
+            if (analytics != null) {
+                tracker.drawDeviation(frame.image, frame.analytics[i]);
+            }
+        }
+        frame.annotateNanos = timed ? System.nanoTime() - start : 0;
+        return frame;
+    }
+
+    /**
+     * Encode stage: write annotated frames to the sink in order and recycle their
+     * buffers
+     */
+    private void encode(BlockingQueue<Future<Frame>> annotated, BlockingQueue<Frame> free) throws Exception {
+        while (true) {
+            Frame frame = annotated.take().get();
+            if (frame == END) {
+                return;
+            }
+            long start = timed ? System.nanoTime() : 0;
+            if (sink != null) {
+                sink.write(frame.image);
+            }
+            if (timed) {
+                metrics.frame(frame.index, frame.decodeNanos, frame.searchNanos, frame.annotateNanos,
+                        System.nanoTime() - start, frame.iterations, frame.pixels);
+            }
+            if (tracker.monitor != null && sink != null) {
+                tracker.monitor.write(frame.image);
+            }
+            if (tracker.verbose) {
+                System.out.println((frame.index + 1) + " out of "
+                        + (tracker.frameCount > 0 ? tracker.frameCount : "?"));
+            }
+            free.put(frame);
+        }
+    }
+
+    /**
+     * Utility function to start a stage thread that stops the whole pipeline if it
+     * fails
+     * 
+     * @param name    the name of the stage
+     * @param factory the factory for the stage thread, IO for stages that block on pipes
+     * @param stage   the body of the stage
+     */
+    private void start(String name, ThreadFactory factory, Stage stage) {
+        Thread thread = factory.newThread(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                // Another stage failed and stopped the pipeline
+            } catch (Throwable t) {
+                if (t instanceof ExecutionException && t.getCause() != null) {
+                    t = t.getCause();
+                }
+                if (failure.compareAndSet(null, t)) {
+                    for (Thread other : threads) {
+                        other.interrupt();
+                    }
+                    while (done.getCount() > 0) {
+                        done.countDown();
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        });
+        thread.setName("pipeline-" + name);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Body of a pipeline stage
+     */
+    private interface Stage {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,154 @@
+package com.projects.pointtracker;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scan kernel using the incubating Vector API. Several pixels are unpacked,
+ * compared against the squared threshold and summed under a lane mask at once.
+ * Only loaded reflectively by PixelScanner, so the rest of the program runs
+ * without the jdk.incubator.vector module. Matchers with a lookup table are
+ * left to the scalar kernel, since a gather per lane costs more than it saves.
+ */
+public class VectorKernel implements ScanKernel {
+
+    // Lanes used for packed int rasters
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    // Lanes used for byte rasters: one load of bytes covers a pixel per int lane, deinterleaved by shuffles.
+    // Capped at 256 bits since wider byte shuffles cost more than they save.
+    private static final VectorShape BGR_SHAPE = INTS.vectorBitSize() >= 256 ? VectorShape.S_256_BIT
+            : VectorShape.S_128_BIT;
+    private static final VectorSpecies<Integer> BGR_INTS = VectorSpecies.of(int.class, BGR_SHAPE);
+    private static final VectorSpecies<Byte> BGR_BYTES = VectorSpecies.of(byte.class, BGR_SHAPE);
+
+    // Shuffles picking the blue, green and red byte of every pixel into the first lanes
+    private static final VectorShuffle<Byte> BLUE = channel(0);
+    private static final VectorShuffle<Byte> GREEN = channel(1);
+    private static final VectorShuffle<Byte> RED = channel(2);
+
+    // Fallback for the ragged ends of every row
+    private final ScalarKernel scalar = new ScalarKernel();
+
+    @Override
+    public void scanInt(ColorMatcher matcher, int[] data, int base, int stride, int lowerX, int upperX, int lowerY,
+            int upperY, long[] sums) {
+        if (matcher.table != null) {
+            scalar.scanInt(matcher, data, base, stride, lowerX, upperX, lowerY, upperY, sums);
+            return;
+        }
+        int lanes = INTS.length();
+        int bound = lowerX + INTS.loopBound(upperX - lowerX);
+        IntVector iota = IntVector.zero(INTS).addIndex(1);
+        long sumX = 0;
+        long sumY = 0;
+        long c = 0;
+
+        for (int y = lowerY; y < upperY; y++) {
+            int row = base + y * stride;
+            // Lane sums stay far below overflow: a lane collects at most width / lanes values below width
+            IntVector accX = IntVector.zero(INTS);
+            long rowCount = 0;
+            for (int x = lowerX; x < bound; x += lanes) {
+                IntVector color = IntVector.fromArray(INTS, data, row + x);
+                IntVector dr = color.lanewise(VectorOperators.LSHR, 16).and(0xff).sub(matcher.red);
+                IntVector dg = color.lanewise(VectorOperators.LSHR, 8).and(0xff).sub(matcher.green);
+                IntVector db = color.and(0xff).sub(matcher.blue);
+                VectorMask<Integer> match = dr.mul(dr).add(dg.mul(dg)).add(db.mul(db))
+                        .compare(VectorOperators.LE, matcher.thresholdSq);
+                accX = accX.add(iota.add(x), match);
+                rowCount += match.trueCount();
+            }
+            sumX += accX.reduceLanesToLong(VectorOperators.ADD);
+            sumY += rowCount * y;
+            c += rowCount;
+        }
+        sums[0] += sumX;
+        sums[1] += sumY;
+        sums[2] += c;
+
+        if (bound < upperX) {
+            scalar.scanInt(matcher, data, base, stride, bound, upperX, lowerY, upperY, sums);
+        }
+    }
+
+    @Override
+    public void scanBgr(ColorMatcher matcher, byte[] data, int base, int stride, int lowerX, int upperX, int lowerY,
+            int upperY, long[] sums) {
+        if (matcher.table != null) {
+            scalar.scanBgr(matcher, data, base, stride, lowerX, upperX, lowerY, upperY, sums);
+            return;
+        }
+        int lanes = BGR_INTS.length();
+        int span = BGR_INTS.loopBound(upperX - lowerX);
+        IntVector iota = IntVector.zero(BGR_INTS).addIndex(1);
+        long sumX = 0;
+        long sumY = 0;
+        long c = 0;
+
+        int y = lowerY;
+        for (; y < upperY; y++) {
+            int start = base + y * stride + lowerX * 3;
+            // The byte load for the last pixels of a row reads past them and may run off the array
+            if (start + (span - lanes) * 3 + BGR_BYTES.length() > data.length) {
+                break;
+            }
+            IntVector accX = IntVector.zero(BGR_INTS);
+            long rowCount = 0;
+            for (int x = 0; x < span; x += lanes) {
+                ByteVector bytes = ByteVector.fromArray(BGR_BYTES, data, start + x * 3);
+                IntVector db = unpack(bytes, BLUE).sub(matcher.blue);
+                IntVector dg = unpack(bytes, GREEN).sub(matcher.green);
+                IntVector dr = unpack(bytes, RED).sub(matcher.red);
+                VectorMask<Integer> match = dr.mul(dr).add(dg.mul(dg)).add(db.mul(db))
+                        .compare(VectorOperators.LE, matcher.thresholdSq);
+                accX = accX.add(iota.add(lowerX + x), match);
+                rowCount += match.trueCount();
+            }
+            sumX += accX.reduceLanesToLong(VectorOperators.ADD);
+            sumY += rowCount * y;
+            c += rowCount;
+        }
+        sums[0] += sumX;
+        sums[1] += sumY;
+        sums[2] += c;
+
+        if (lowerX + span < upperX) {
+            scalar.scanBgr(matcher, data, base, stride, lowerX + span, upperX, lowerY, y, sums);
+        }
+        if (y < upperY) {
+            scalar.scanBgr(matcher, data, base, stride, lowerX, upperX, y, upperY, sums);
+        }
+    }
+
+    /**
+     * Utility function to widen one channel of interleaved pixels into int lanes
+     * 
+     * @param bytes   the bytes starting at the first of the pixels
+     * @param channel the shuffle selecting the channel
+     * @return the unsigned channel values of the pixels
+     */
+    private static IntVector unpack(ByteVector bytes, VectorShuffle<Byte> channel) {
+        return ((IntVector) bytes.rearrange(channel).convertShape(VectorOperators.B2I, BGR_INTS, 0)).and(0xff);
+    }
+
+    /**
+     * Utility function to build the shuffle moving one channel of every pixel into
+     * the first lanes
+     * 
+     * @param offset the byte offset of the channel within a pixel
+     * @return the shuffle for the channel
+     */
+    private static VectorShuffle<Byte> channel(int offset) {
+        int[] index = new int[BGR_BYTES.length()];
+        for (int i = 0; i < BGR_INTS.length(); i++) {
+            index[i] = i * 3 + offset;
+        }
+        return VectorShuffle.fromArray(BGR_BYTES, index, 0);
+    }
+}
@@ -2,6 +2,7 @@ module com.projects.pointtracker {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.desktop;
+    requires static jdk.incubator.vector;
 
 
     opens com.projects.pointtracker to javafx.fxml;
@@ -0,0 +1,211 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the 8-connected labeling of BlobDetector on hand-drawn cases and
+ * against a flood fill on random images
+ */
+public class BlobDetectorTest {
+
+    // Color of the pixels to label
+    private static final int TARGET = 0x20c040;
+
+    // Matcher of the target color only
+    private final ColorMatcher matcher = new ColorMatcher(TARGET, 0);
+
+    @Test
+    public void diagonalNeighboursAreConnected() {
+        List<Blob> blobs = detect(
+                "x....",
+                ".x...",
+                "..x.x",
+                "...x.");
+        assertEquals(1, blobs.size());
+        Blob blob = blobs.get(0);
+        assertEquals(5, blob.area);
+        assertEquals(0 + 1 + 2 + 4 + 3, blob.sumX);
+        assertEquals(0 + 1 + 2 + 2 + 3, blob.sumY);
+        assertEquals(0, blob.minX);
+        assertEquals(4, blob.maxX);
+        assertEquals(0, blob.minY);
+        assertEquals(3, blob.maxY);
+    }
+
+    @Test
+    public void gapsSeparateBlobs() {
+        List<Blob> blobs = detect(
+                "xx.xx",
+                ".....",
+                "x.x.x");
+        assertEquals(5, blobs.size());
+    }
+
+    @Test
+    public void runsJoinedLaterAreOneBlob() {
+        // Both arms of the U get their own label until the bottom row joins them
+        List<Blob> blobs = detect(
+                "x...x.x",
+                "x...x.x",
+                "x...x.x",
+                ".xxx.x.");
+        assertEquals(1, blobs.size());
+        assertEquals(13, blobs.get(0).area);
+    }
+
+    @Test
+    public void antiDiagonalChainsJoinThroughEveryRow() {
+        List<Blob> blobs = detect(
+                "....x.x",
+                "...x.x.",
+                "..x.x..",
+                ".x.x...",
+                "x.x....");
+        assertEquals(1, blobs.size());
+        assertEquals(10, blobs.get(0).area);
+    }
+
+    @Test
+    public void windowCutsBlobs() {
+        BufferedImage image = image(
+                "x.x..",
+                ".x...",
+                "...xx");
+        assertEquals(2, new BlobDetector().detect(matcher, image, new int[] { 0, 5, 0, 3 }).size());
+        // Without the middle row the two top pixels are apart
+        List<Blob> cut = new BlobDetector().detect(matcher, image, new int[] { 0, 5, 0, 1 });
+        assertEquals(2, cut.size());
+        assertEquals(2, cut.stream().mapToLong(b -> b.area).sum());
+        assertEquals(0, new BlobDetector().detect(matcher, image, new int[] { 2, 2, 0, 3 }).size());
+    }
+
+    @Test
+    public void nearestPrefersLargeBlobs() {
+        List<Blob> blobs = detect(
+                "x.......",
+                "........",
+                ".....xxx",
+                ".....xxx");
+        Blob speck = blobs.stream().filter(b -> b.area == 1).findFirst().get();
+        Blob large = blobs.stream().filter(b -> b.area == 6).findFirst().get();
+        assertSame(large, BlobDetector.nearest(blobs, 0, 0, 4));
+        assertSame(speck, BlobDetector.nearest(blobs, 0, 0, 1));
+        assertNull(BlobDetector.nearest(new ArrayList<>(), 0, 0, 4));
+    }
+
+    @Test
+    public void matchesFloodFillOnRandomImages() {
+        Random random = new Random(19);
+        BlobDetector detector = new BlobDetector();
+        for (int n = 0; n < 200; n++) {
+            int width = 1 + random.nextInt(40);
+            int height = 1 + random.nextInt(30);
+            double density = random.nextDouble() * 0.7;
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (random.nextDouble() < density) {
+                        image.setRGB(x, y, TARGET);
+                    }
+                }
+            }
+            int x0 = random.nextInt(width);
+            int y0 = random.nextInt(height);
+            int[] window = { x0, x0 + 1 + random.nextInt(width - x0), y0, y0 + 1 + random.nextInt(height - y0) };
+            // The same detector is reused, as the tracker does, so stale buffers would show up
+            assertEquals(describe(floodFill(image, window)), describe(detector.detect(matcher, image, window)));
+        }
+    }
+
+    /**
+     * Utility function to label a drawing in which x marks the target color
+     */
+    private List<Blob> detect(String... rows) {
+        BufferedImage image = image(rows);
+        return new BlobDetector().detect(matcher, image, new int[] { 0, image.getWidth(), 0, image.getHeight() });
+    }
+
+    /**
+     * Utility function to turn a drawing into an image
+     */
+    private static BufferedImage image(String... rows) {
+        BufferedImage image = new BufferedImage(rows[0].length(), rows.length, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                if (rows[y].charAt(x) == 'x') {
+                    image.setRGB(x, y, TARGET);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Utility function to find the 8-connected blobs of a window by flood fill
+     */
+    private List<Blob> floodFill(BufferedImage image, int[] window) {
+        int w = window[1] - window[0];
+        int h = window[3] - window[2];
+        boolean[] seen = new boolean[w * h];
+        List<Blob> blobs = new ArrayList<>();
+        for (int start = 0; start < w * h; start++) {
+            if (seen[start] || !matcher.matches(image.getRGB(window[0] + start % w, window[2] + start / w))) {
+                continue;
+            }
+            Blob blob = new Blob();
+            blob.minX = blob.minY = Integer.MAX_VALUE;
+            blob.maxX = blob.maxY = Integer.MIN_VALUE;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(start);
+            seen[start] = true;
+            while (!queue.isEmpty()) {
+                int i = queue.poll();
+                int x = window[0] + i % w;
+                int y = window[2] + i / w;
+                blob.area += 1;
+                blob.sumX += x;
+                blob.sumY += y;
+                blob.minX = Math.min(blob.minX, x);
+                blob.maxX = Math.max(blob.maxX, x);
+                blob.minY = Math.min(blob.minY, y);
+                blob.maxY = Math.max(blob.maxY, y);
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = i % w + dx;
+                        int ny = i / w + dy;
+                        if (nx >= 0 && nx < w && ny >= 0 && ny < h && !seen[ny * w + nx]
+                                && matcher.matches(image.getRGB(window[0] + nx, window[2] + ny))) {
+                            seen[ny * w + nx] = true;
+                            queue.add(ny * w + nx);
+                        }
+                    }
+                }
+            }
+            blobs.add(blob);
+        }
+        return blobs;
+    }
+
+    /**
+     * Utility function to describe blobs in a fixed order for comparison
+     */
+    private static List<String> describe(List<Blob> blobs) {
+        List<String> text = new ArrayList<>();
+        blobs.stream()
+                .sorted(Comparator.comparingLong((Blob b) -> b.sumY * 1000003 + b.sumX).thenComparingLong(b -> b.area))
+                .forEach(b -> text.add(b.area + " " + b.sumX + "," + b.sumY + " [" + b.minX + ".." + b.maxX + "] ["
+                        + b.minY + ".." + b.maxY + "]"));
+        return text;
+    }
+}
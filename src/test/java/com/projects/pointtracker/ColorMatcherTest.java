@@ -0,0 +1,123 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+/**
+ * Tests that the squared integer color test agrees with Tracker.colorDiff,
+ * which stays the reference definition of a match
+ */
+public class ColorMatcherTest {
+
+    // Tracker used for its colorDiff only
+    private final Tracker tracker = new Tracker("test", 30, 1, 1, 0);
+
+    // Targets on the corners and faces of the rgb cube as well as inside it
+    private static final int[] TARGETS = { 0x000000, 0xffffff, 0xff0000, 0x00ff00, 0x0000ff, 0x20c040, 0x808080 };
+
+    // Tolerances including the default, the extremes and ones between integer distances
+    private static final double[] TOLERANCES = { 0, 0.5, 1, 15, 15.0001, 37.5, 99.9, 100 };
+
+    @Test
+    public void matchesColorDiffOnTheBoundary() {
+        for (int target : TARGETS) {
+            for (double tolerance : TOLERANCES) {
+                ColorMatcher matcher = new ColorMatcher(target, tolerance);
+                int limit = Math.max(0, matcher.thresholdSq);
+                int radius = (int) Math.ceil(Math.sqrt(limit)) + 1;
+                for (int dr = -radius; dr <= radius; dr++) {
+                    for (int dg = -radius; dg <= radius; dg++) {
+                        int rest = limit - dr * dr - dg * dg;
+                        if (rest < -2 * radius) {
+                            continue;
+                        }
+                        // Blue offsets just inside and just outside the sphere of the threshold
+                        int db = (int) Math.sqrt(Math.max(0, rest));
+                        for (int d = db - 1; d <= db + 1; d++) {
+                            check(matcher, target, tolerance, dr, dg, d);
+                            check(matcher, target, tolerance, dr, dg, -d);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesColorDiffOnRandomColors() {
+        Random random = new Random(3);
+        for (int target : TARGETS) {
+            for (double tolerance : TOLERANCES) {
+                ColorMatcher matcher = new ColorMatcher(target, tolerance);
+                for (int i = 0; i < 20000; i++) {
+                    int color = random.nextInt(1 << 24);
+                    assertEquals(tracker.colorDiff(color, target) <= tolerance, matcher.matches(color),
+                            String.format("color %06x, target %06x, tolerance %s", color, target, tolerance));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void ignoresTheAlphaChannel() {
+        ColorMatcher matcher = new ColorMatcher(0x20c040, 15);
+        assertEquals(true, matcher.matches(0xff20c040));
+        assertEquals(false, matcher.matches(0xff000000));
+    }
+
+    @Test
+    public void hsvMatchesNeutralTargets() {
+        for (int target : new int[] { 0x000000, 0x808080, 0xffffff }) {
+            ColorMatcher matcher = new ColorMatcher(target, 15, ColorMetric.HSV);
+            assertTrue(matcher.matches(target), String.format("target %06x", target));
+        }
+        ColorMatcher gray = new ColorMatcher(0x808080, 15, ColorMetric.HSV);
+        // Slightly tinted and slightly lighter or darker grays
+        assertTrue(gray.matches(0x8a8080));
+        assertTrue(gray.matches(0x7a7a80));
+        assertTrue(gray.matches(0x9a9a9a));
+        // Saturated colors of the same value, and grays too far in value
+        assertFalse(gray.matches(0x804040));
+        assertFalse(gray.matches(0x408080));
+        assertFalse(gray.matches(0x303030));
+        assertFalse(gray.matches(0xf0f0f0));
+
+        ColorMatcher black = new ColorMatcher(0x000000, 15, ColorMetric.HSV);
+        // Noise makes dark pixels fully saturated, which must not stop them from matching black
+        assertTrue(black.matches(0x060000));
+        assertFalse(black.matches(0x800000));
+        assertFalse(black.matches(0x404040));
+
+        ColorMatcher white = new ColorMatcher(0xffffff, 15, ColorMetric.HSV);
+        assertTrue(white.matches(0xf4f8ff));
+        assertFalse(white.matches(0xffc0c0));
+    }
+
+    @Test
+    public void hsvStillNeedsHueForColoredTargets() {
+        ColorMatcher matcher = new ColorMatcher(0x20c040, 15, ColorMetric.HSV);
+        assertTrue(matcher.matches(0x20c040));
+        assertFalse(matcher.matches(0x808080));
+    }
+
+    /**
+     * Utility function to compare the matcher with colorDiff for a color offset
+     * from the target, skipping offsets outside the rgb cube
+     */
+    private void check(ColorMatcher matcher, int target, double tolerance, int dr, int dg, int db) {
+        int r = ((target >> 16) & 0xff) + dr;
+        int g = ((target >> 8) & 0xff) + dg;
+        int b = (target & 0xff) + db;
+        if (r < 0 || r > 255 || g < 0 || g > 255 || b < 0 || b > 255) {
+            return;
+        }
+        int color = (r << 16) | (g << 8) | b;
+        assertEquals(tracker.colorDiff(color, target) <= tolerance, matcher.matches(color),
+                String.format("color %06x, target %06x, tolerance %s", color, target, tolerance));
+    }
+}
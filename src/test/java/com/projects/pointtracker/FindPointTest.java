@@ -0,0 +1,123 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Tests that findPoint, which only scans the ring each window adds, finds the
+ * same point in the same number of iterations as scanning every window whole
+ */
+public class FindPointTest {
+
+    // Color of the dots to find
+    private static final int TARGET = 0x20c040;
+
+    @Test
+    public void ringScanMatchesFullWindowScan() {
+        Random random = new Random(5);
+        for (int type : new int[] { BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_RGB }) {
+            for (int frame = 0; frame < 20; frame++) {
+                BufferedImage image = frame(type, 160 + random.nextInt(200), 90 + random.nextInt(150), random);
+                Tracker tracker = tracker(image);
+                for (int i = 0; i < 40; i++) {
+                    // Predictions inside, on the edge of and outside the frame
+                    int predX = random.nextInt(image.getWidth() + 40) - 20;
+                    int predY = random.nextInt(image.getHeight() + 40) - 20;
+                    int initX = 1 + random.nextInt(image.getWidth() / 4);
+                    int initY = 1 + random.nextInt(image.getHeight() / 4);
+                    check(tracker, image, predX, predY, initX, initY);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void ringScanFailsWhereFullWindowScanFails() {
+        BufferedImage image = new BufferedImage(200, 120, BufferedImage.TYPE_3BYTE_BGR);
+        Tracker tracker = tracker(image);
+        assertThrows(IllegalStateException.class, () -> tracker.findPoint(TARGET, image, 100, 60));
+        assertEquals(20, tracker.lastIterations);
+        assertThrows(IllegalStateException.class, () -> reference(tracker, image, 100, 60, 10, 6));
+    }
+
+    /**
+     * Utility function to compare findPoint with the reference for one prediction
+     */
+    private void check(Tracker tracker, BufferedImage image, int predX, int predY, int initX, int initY) {
+        int[] expected;
+        int iterations;
+        try {
+            expected = reference(tracker, image, predX, predY, initX, initY);
+            iterations = tracker.lastIterations;
+        } catch (IllegalStateException e) {
+            assertThrows(IllegalStateException.class,
+                    () -> tracker.findPoint(TARGET, image, predX, predY, initX, initY));
+            return;
+        }
+        String at = "prediction (" + predX + ", " + predY + ") window " + initX + "x" + initY;
+        assertArrayEquals(expected, tracker.findPoint(TARGET, image, predX, predY, initX, initY), at);
+        assertEquals(iterations, tracker.lastIterations, at);
+    }
+
+    /**
+     * Utility function to look for the point as findPoint does, but scanning
+     * every window whole with searchPoint
+     */
+    private static int[] reference(Tracker tracker, BufferedImage image, int predX, int predY, int initX,
+            int initY) {
+        int[] previous = null;
+        for (int iter = 1; iter <= 20; iter++) {
+            int[] window = Tracker.searchWindow(image, predX, predY, initX + (iter - 1) * (image.getWidth() / 20),
+                    initY + (iter - 1) * (image.getHeight() / 20));
+            long[] sums = new long[3];
+            tracker.scannerFor(TARGET).scan(image, window[0], window[1], window[2], window[3], sums);
+            int[] current = sums[2] > 0 ? tracker.centroid(sums) : null;
+            if (current != null && previous != null && current[0] == previous[0] && current[1] == previous[1]) {
+                tracker.lastIterations = iter;
+                return current;
+            }
+            previous = current;
+        }
+        throw new IllegalStateException("Cannot find color in frame");
+    }
+
+    /**
+     * Utility function to create a tracker that grows windows until the centroid
+     * settles, as the ring scan does
+     */
+    private static Tracker tracker(BufferedImage image) {
+        Tracker tracker = new Tracker("test", 30, image.getWidth(), image.getHeight(), 1);
+        tracker.verbose = false;
+        tracker.useBlobs = false;
+        return tracker;
+    }
+
+    /**
+     * Utility function to draw a few dots of the target color and some stray
+     * pixels of it over a dark background
+     */
+    private static BufferedImage frame(int type, int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics g = image.getGraphics();
+        g.setColor(new Color(40, 40, 40));
+        g.fillRect(0, 0, width, height);
+        g.setColor(new Color(TARGET));
+        for (int i = random.nextInt(4); i > 0; i--) {
+            int size = 2 + random.nextInt(12);
+            g.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+        }
+        g.dispose();
+        for (int i = random.nextInt(30); i > 0; i--) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), TARGET);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,107 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the quantiles of the log-bucketed histogram against the exact
+ * quantiles of the recorded values
+ */
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.quantile(0.5));
+        assertEquals(0, histogram.quantile(0.99));
+        assertEquals(0, histogram.mean(), 0);
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int value = 0; value < 8; value++) {
+            histogram.record(value);
+        }
+        assertEquals(0, histogram.quantile(0));
+        assertEquals(3, histogram.quantile(0.5));
+        assertEquals(6, histogram.quantile(0.8));
+        assertEquals(7, histogram.quantile(1));
+        assertEquals(3.5, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(-1);
+        histogram.record(10);
+        assertEquals(0, histogram.quantile(0.5));
+        assertEquals(10, histogram.quantile(1));
+        assertEquals(10, histogram.sum);
+    }
+
+    @Test
+    public void quantilesAreWithinOneBucketOfExact() {
+        Random random = new Random(13);
+        long[][] samples = { uniform(random, 1000, 1000), uniform(random, 5000, 1L << 40), logNormal(random, 5000) };
+        for (long[] values : samples) {
+            Histogram histogram = new Histogram();
+            for (long value : values) {
+                histogram.record(value);
+            }
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            for (double q : new double[] { 0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1 }) {
+                long exact = sorted[(int) Math.max(0, Math.ceil(q * sorted.length) - 1)];
+                long estimate = histogram.quantile(q);
+                // The estimate is the upper bound of the bucket holding the exact value, capped at the maximum
+                assertTrue(estimate >= exact, "p" + q * 100 + " " + estimate + " below " + exact);
+                assertTrue(estimate <= exact + exact / 8, "p" + q * 100 + " " + estimate + " too far above " + exact);
+            }
+            assertEquals(sorted[sorted.length - 1], histogram.quantile(1));
+            assertEquals(sorted[sorted.length - 1], histogram.max);
+            assertEquals(values.length, histogram.count);
+        }
+    }
+
+    @Test
+    public void percentilesOfAKnownDistribution() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value * 1000L);
+        }
+        // p50 is 50000, which falls in the bucket [49152, 53247]
+        assertEquals(53247, histogram.quantile(0.5));
+        // p99 is 99000, which falls in the bucket [98304, 106495], capped at the maximum
+        assertEquals(100000, histogram.quantile(0.99));
+    }
+
+    /**
+     * Utility function to draw values uniformly below a bound
+     */
+    private static long[] uniform(Random random, int count, long bound) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (long) (random.nextDouble() * bound);
+        }
+        return values;
+    }
+
+    /**
+     * Utility function to draw values with a long tail, like search latencies in
+     * nanoseconds
+     */
+    private static long[] logNormal(Random random, int count) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (long) Math.exp(10 + 1.5 * random.nextGaussian());
+        }
+        return values;
+    }
+}
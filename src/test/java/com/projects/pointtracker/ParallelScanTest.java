@@ -0,0 +1,86 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Tests that the full-frame fallbacks of ParallelScan and ImagePyramid find a
+ * dot as a whole and prefer it to larger patches far from the prediction
+ */
+public class ParallelScanTest {
+
+    // Color of the dots and patches
+    private static final int TARGET = 0x20c040;
+
+    // Scanner matching the target color at the default tolerance
+    private final PixelScanner scanner = new PixelScanner(new ColorMatcher(TARGET, 15));
+
+    @Test
+    public void findsTheWholeDotAcrossTileCorners() {
+        BufferedImage image = image(320, 256);
+        // A 10 x 10 dot centered on the corner shared by four tiles
+        fill(image, 123, 123, 10, 10);
+        int[] found = ParallelScan.acquire(scanner, image, 10, 10);
+        assertNotNull(found);
+        assertEquals(127, found[0]);
+        assertEquals(127, found[1]);
+    }
+
+    @Test
+    public void prefersANearDotToALargerPatchFarAway() {
+        BufferedImage image = image(1280, 720);
+        fill(image, 100, 100, 10, 10);
+        fill(image, 1100, 600, 20, 20);
+        int[] found = ParallelScan.acquire(scanner, image, 105, 105);
+        assertNotNull(found);
+        assertEquals(104, found[0]);
+        assertEquals(104, found[1]);
+
+        // Close to the patch the patch wins instead
+        found = ParallelScan.acquire(scanner, image, 1110, 610);
+        assertEquals(1109, found[0]);
+        assertEquals(609, found[1]);
+    }
+
+    @Test
+    public void returnsNullWithoutMatches() {
+        assertNull(ParallelScan.acquire(scanner, image(200, 100), 50, 50));
+    }
+
+    @Test
+    public void pyramidPrefersANearDotToALargerPatchFarAway() {
+        BufferedImage image = image(1280, 720);
+        fill(image, 96, 96, 48, 48);
+        fill(image, 1024, 512, 96, 96);
+        ImagePyramid pyramid = new ImagePyramid();
+        pyramid.reset(image);
+        int[] found = pyramid.acquire(scanner.matcher, 120, 120);
+        assertNotNull(found);
+        assertEquals(120, found[0], 16);
+        assertEquals(120, found[1], 16);
+    }
+
+    /**
+     * Utility function to create a black frame
+     */
+    private static BufferedImage image(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    /**
+     * Utility function to draw a rectangle of the target color
+     */
+    private static void fill(BufferedImage image, int x, int y, int width, int height) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(TARGET));
+        g.fillRect(x, y, width, height);
+        g.dispose();
+    }
+}
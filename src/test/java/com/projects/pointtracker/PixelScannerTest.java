@@ -0,0 +1,109 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Tests that the raster scans of PixelScanner match a getRGB scan using
+ * Tracker.colorDiff
+ */
+public class PixelScannerTest {
+
+    // Tracker used for its colorDiff only
+    private final Tracker tracker = new Tracker("test", 30, 1, 1, 0);
+
+    // Color of the patches to find
+    private static final int TARGET = 0x20c040;
+
+    @Test
+    public void scansByteRastersLikeColorDiff() {
+        checkWindows(image(BufferedImage.TYPE_3BYTE_BGR, 97, 61, 1));
+    }
+
+    @Test
+    public void scansIntRastersLikeColorDiff() {
+        checkWindows(image(BufferedImage.TYPE_INT_RGB, 97, 61, 2));
+    }
+
+    @Test
+    public void scansSubimagesLikeColorDiff() {
+        // A subimage shares the raster of its parent, so the scan has to honour the translation
+        checkWindows(image(BufferedImage.TYPE_3BYTE_BGR, 120, 80, 3).getSubimage(13, 7, 90, 60));
+        checkWindows(image(BufferedImage.TYPE_INT_RGB, 120, 80, 4).getSubimage(5, 11, 101, 55));
+    }
+
+    @Test
+    public void scansOtherImageTypesLikeColorDiff() {
+        checkWindows(image(BufferedImage.TYPE_INT_ARGB, 40, 30, 5));
+        checkWindows(image(BufferedImage.TYPE_INT_BGR, 40, 30, 6));
+    }
+
+    /**
+     * Utility function to compare the scanner with the reference scan over
+     * windows touching every edge, single rows and columns, and empty windows
+     */
+    private void checkWindows(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int[][] windows = { { 0, w, 0, h }, { 0, 1, 0, h }, { w - 1, w, 0, h }, { 0, w, 0, 1 }, { 0, w, h - 1, h },
+                { 3, w - 5, 2, h - 7 }, { 1, 34, 9, 10 }, { 5, 5, 0, h }, { 0, w, 8, 8 }, { 7, 4, 0, h } };
+        Random random = new Random(w * 31 + h);
+        for (int tolerance : new int[] { 0, 5, 15, 40 }) {
+            PixelScanner scanner = new PixelScanner(new ColorMatcher(TARGET, tolerance));
+            for (int[] window : windows) {
+                check(scanner, image, window, tolerance);
+            }
+            for (int i = 0; i < 50; i++) {
+                int x0 = random.nextInt(w);
+                int y0 = random.nextInt(h);
+                check(scanner, image, new int[] { x0, x0 + random.nextInt(w - x0 + 1), y0,
+                        y0 + random.nextInt(h - y0 + 1) }, tolerance);
+            }
+        }
+    }
+
+    /**
+     * Utility function to compare one window with the reference scan
+     */
+    private void check(PixelScanner scanner, BufferedImage image, int[] window, double tolerance) {
+        long[] expected = new long[3];
+        for (int y = window[2]; y < window[3]; y++) {
+            for (int x = window[0]; x < window[1]; x++) {
+                if (tracker.colorDiff(image.getRGB(x, y), TARGET) <= tolerance) {
+                    expected[0] += x;
+                    expected[1] += y;
+                    expected[2] += 1;
+                }
+            }
+        }
+        long[] sums = new long[3];
+        scanner.scan(image, window[0], window[1], window[2], window[3], sums);
+        assertArrayEquals(expected, sums, "window " + java.util.Arrays.toString(window) + " at " + tolerance);
+    }
+
+    /**
+     * Utility function to create a noisy image with patches near the target
+     * color
+     */
+    static BufferedImage image(int type, int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int color;
+                if (random.nextInt(3) == 0) {
+                    // Near the target, on either side of the tolerances tested
+                    color = TARGET ^ (random.nextInt(64) << 16 | random.nextInt(64) << 8 | random.nextInt(64));
+                } else {
+                    color = random.nextInt(1 << 24);
+                }
+                image.setRGB(x, y, 0xff000000 | color);
+            }
+        }
+        return image;
+    }
+}
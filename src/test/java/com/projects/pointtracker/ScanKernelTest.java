@@ -0,0 +1,128 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests that the Vector API kernel adds up the same pixels as the scalar kernel.
+ * Skipped unless the runtime has the jdk.incubator.vector module, which the
+ * surefire configuration adds.
+ */
+public class ScanKernelTest {
+
+    // Color of the pixels to find
+    private static final int TARGET = 0x20c040;
+
+    @Test
+    public void vectorKernelMatchesScalarOnIntRows() {
+        ScanKernel vector = vectorKernel();
+        ScanKernel scalar = new ScalarKernel();
+        Random random = new Random(10);
+        for (ColorMatcher matcher : matchers()) {
+            // Every width up to a few 512-bit vectors, so most are not a multiple of the lane count
+            for (int width = 1; width <= 70; width++) {
+                int height = 1 + random.nextInt(4);
+                int stride = width + random.nextInt(9);
+                int base = random.nextInt(5);
+                int[] data = new int[base + height * stride];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = color(random);
+                }
+                for (int[] window : windows(width, height, random)) {
+                    long[] expected = { 7, 11, 13 };
+                    long[] sums = { 7, 11, 13 };
+                    scalar.scanInt(matcher, data, base, stride, window[0], window[1], window[2], window[3],
+                            expected);
+                    vector.scanInt(matcher, data, base, stride, window[0], window[1], window[2], window[3], sums);
+                    assertArrayEquals(expected, sums, "width " + width + ", window " + Arrays.toString(window));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void vectorKernelMatchesScalarOnBgrRows() {
+        ScanKernel vector = vectorKernel();
+        ScanKernel scalar = new ScalarKernel();
+        Random random = new Random(11);
+        for (ColorMatcher matcher : matchers()) {
+            for (int width = 1; width <= 70; width++) {
+                int height = 1 + random.nextInt(4);
+                int stride = width * 3 + random.nextInt(9);
+                int base = random.nextInt(5);
+                // No padding after the last row, so the last vector loads end right at the array end
+                byte[] data = new byte[base + (height - 1) * stride + width * 3];
+                for (int i = base; i + 2 < data.length; i += 3) {
+                    int color = color(random);
+                    data[i] = (byte) color;
+                    data[i + 1] = (byte) (color >> 8);
+                    data[i + 2] = (byte) (color >> 16);
+                }
+                for (int[] window : windows(width, height, random)) {
+                    long[] expected = { 7, 11, 13 };
+                    long[] sums = { 7, 11, 13 };
+                    scalar.scanBgr(matcher, data, base, stride, window[0], window[1], window[2], window[3],
+                            expected);
+                    vector.scanBgr(matcher, data, base, stride, window[0], window[1], window[2], window[3], sums);
+                    assertArrayEquals(expected, sums, "width " + width + ", window " + Arrays.toString(window));
+                }
+            }
+        }
+    }
+
+    /**
+     * Utility function to load the vector kernel the way PixelScanner does
+     *
+     * @return the vector kernel, skipping the test if it cannot be loaded
+     */
+    private static ScanKernel vectorKernel() {
+        try {
+            return (ScanKernel) Class.forName("com.projects.pointtracker.VectorKernel").getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            assumeTrue(false, "Vector API not available: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Utility function to get matchers for the rgb distance, including the
+     * extremes, and one with a lookup table, which the vector kernel hands back
+     */
+    private static ColorMatcher[] matchers() {
+        return new ColorMatcher[] { new ColorMatcher(TARGET, 15), new ColorMatcher(TARGET, 0),
+                new ColorMatcher(TARGET, 100), new ColorMatcher(TARGET, 15, ColorMetric.HSV) };
+    }
+
+    /**
+     * Utility function to get the whole area, full width bands, windows against
+     * either end of the rows and random windows
+     */
+    private static int[][] windows(int width, int height, Random random) {
+        int[][] windows = new int[8][];
+        windows[0] = new int[] { 0, width, 0, height };
+        windows[1] = new int[] { 0, width, height - 1, height };
+        windows[2] = new int[] { width / 2, width, 0, height };
+        windows[3] = new int[] { 0, (width + 1) / 2, 0, height };
+        for (int i = 4; i < windows.length; i++) {
+            int x0 = random.nextInt(width);
+            int y0 = random.nextInt(height);
+            windows[i] = new int[] { x0, x0 + 1 + random.nextInt(width - x0), y0,
+                    y0 + 1 + random.nextInt(height - y0) };
+        }
+        return windows;
+    }
+
+    /**
+     * Utility function to draw a color that is near the target half of the time
+     */
+    private static int color(Random random) {
+        return random.nextBoolean() ? random.nextInt()
+                : 0xff000000 | TARGET ^ (random.nextInt(48) << 16 | random.nextInt(48) << 8 | random.nextInt(48));
+    }
+}
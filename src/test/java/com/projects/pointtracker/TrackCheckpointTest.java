@@ -0,0 +1,167 @@
+package com.projects.pointtracker;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that a checkpoint cut short anywhere restores its last complete
+ * record, and that runs into different outputs keep separate checkpoints
+ */
+public class TrackCheckpointTest {
+
+    @TempDir
+    File folder;
+
+    @Test
+    public void truncatedTailRestoresLastCompleteRecord() throws IOException {
+        List<Target> run = targets();
+        TrackCheckpoint checkpoint = new TrackCheckpoint(folder.getPath(), "key", "out.mp4");
+        track(run, 0, 3);
+        checkpoint.append(run);
+        long first = file().length();
+        track(run, 3, 5);
+        checkpoint.append(run);
+        byte[] full = Files.readAllBytes(file().toPath());
+
+        // Cut the file at every byte of the second record, as a crash while appending would
+        for (int length = (int) first; length <= full.length; length++) {
+            Files.write(file().toPath(), Arrays.copyOf(full, length));
+            List<Target> restored = targets();
+            int frames = new TrackCheckpoint(folder.getPath(), "key", "out.mp4").load(restored);
+            int expected = length == full.length ? 5 : 3;
+            assertEquals(expected, frames, "cut at " + length + " of " + full.length);
+            assertEquals(expected == 5 ? full.length : first, file().length(), "cut at " + length);
+            for (int i = 0; i < run.size(); i++) {
+                Target target = restored.get(i);
+                assertEquals(expected, target.coords.size());
+                for (int f = 0; f < expected; f++) {
+                    int[] c = run.get(i).coords.get(f);
+                    if (c == null) {
+                        assertNull(target.coords.get(f));
+                    } else {
+                        assertArrayEquals(c, target.coords.get(f));
+                    }
+                }
+                assertEquals(lost(run.get(i), expected), target.lost);
+            }
+        }
+    }
+
+    @Test
+    public void appendsAfterATruncatedTailFollowOn() throws IOException {
+        List<Target> run = targets();
+        TrackCheckpoint checkpoint = new TrackCheckpoint(folder.getPath(), "key", "out.mp4");
+        track(run, 0, 4);
+        checkpoint.append(run);
+        track(run, 4, 6);
+        checkpoint.append(run);
+        try (RandomAccessFile out = new RandomAccessFile(file(), "rw")) {
+            out.setLength(out.length() - 7);
+        }
+
+        List<Target> resumed = targets();
+        TrackCheckpoint again = new TrackCheckpoint(folder.getPath(), "key", "out.mp4");
+        assertEquals(4, again.load(resumed));
+        // The motion model continues where it was saved
+        assertArrayEquals(predictAfter(run, 4), resumed.get(0).predictor.predict());
+        track(resumed, 4, 9);
+        again.append(resumed);
+
+        List<Target> loaded = targets();
+        assertEquals(9, new TrackCheckpoint(folder.getPath(), "key", "out.mp4").load(loaded));
+        assertArrayEquals(resumed.get(1).coords.get(8), loaded.get(1).coords.get(8));
+    }
+
+    @Test
+    public void unreadableCheckpointIsDropped() throws IOException {
+        file().getParentFile().mkdirs();
+        Files.write(file().toPath(),
+                "pointtracker-checkpoint 1 2\nc 0 1,2\nend x\n".getBytes(StandardCharsets.US_ASCII));
+        List<Target> run = targets();
+        assertEquals(0, new TrackCheckpoint(folder.getPath(), "key", "out.mp4").load(run));
+        assertFalse(file().exists());
+        assertEquals(0, run.get(0).coords.size());
+    }
+
+    @Test
+    public void differentOutputsKeepSeparateCheckpoints() throws IOException {
+        List<Target> run = targets();
+        track(run, 0, 2);
+        new TrackCheckpoint(folder.getPath(), "key", "a/out.mp4").append(run);
+        track(run, 2, 4);
+        new TrackCheckpoint(folder.getPath(), "key", "b/out.mp4").append(run);
+
+        assertEquals(2, folder.listFiles().length);
+        assertEquals(4, new TrackCheckpoint(folder.getPath(), "key", "b/out.mp4").load(targets()));
+        assertEquals(0, new TrackCheckpoint(folder.getPath(), "key", "c/out.mp4").load(targets()));
+    }
+
+    /**
+     * Utility function to get the checkpoint file of the runs into out.mp4
+     */
+    private File file() {
+        String run = TrackCache.hashText(new File("out.mp4").getAbsolutePath()).substring(0, 16);
+        return new File(folder, "key-" + run + ".checkpoint");
+    }
+
+    /**
+     * Utility function to create a target with each kind of motion model
+     */
+    private static List<Target> targets() {
+        return List.of(new Target(0x20c040, 15, new KalmanPredictor()),
+                new Target(0xff0000, 15, new LinearPredictor()));
+    }
+
+    /**
+     * Utility function to track frames of made-up motion, losing the second
+     * target on every third frame
+     */
+    private static void track(List<Target> targets, int from, int to) {
+        for (int f = from; f < to; f++) {
+            for (int i = 0; i < targets.size(); i++) {
+                Target target = targets.get(i);
+                if (i == 1 && f % 3 == 2) {
+                    target.coords.add(null);
+                    target.lost += 1;
+                    continue;
+                }
+                int[] c = { 10 + 3 * f + i, 20 + f * f };
+                target.coords.add(c);
+                target.predictor.update(c);
+            }
+        }
+    }
+
+    /**
+     * Utility function to count the frames a target was lost in among the first
+     * frames of a run
+     */
+    private static int lost(Target target, int frames) {
+        return (int) target.coords.subList(0, frames).stream().filter(c -> c == null).count();
+    }
+
+    /**
+     * Utility function to get the prediction of the first target after the
+     * first frames of a run, replayed on a fresh model
+     */
+    private static int[] predictAfter(List<Target> run, int frames) {
+        MotionPredictor predictor = run.get(0).predictor.fresh();
+        for (int f = 0; f < frames; f++) {
+            predictor.update(run.get(0).coords.get(f));
+        }
+        return predictor.predict();
+    }
+}